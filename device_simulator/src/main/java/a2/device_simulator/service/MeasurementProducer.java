@@ -53,7 +53,7 @@ public class MeasurementProducer {
                     Instant.now()
             );
 
-            rabbitTemplate.convertAndSend(queueName, message);
+            send(message);
 
             log.info("Sent measurement: deviceId={}, value={} kWh, timestamp={}",
                     deviceId, String.format("%.3f", consumption), message.getTimestamp());
@@ -87,7 +87,7 @@ public class MeasurementProducer {
                         consumption,
                         ts
                 );
-                rabbitTemplate.convertAndSend(queueName, msg);
+                send(msg);
             }
         }
 
@@ -121,7 +121,14 @@ public class MeasurementProducer {
                 value,
                 Instant.now()
         );
-        rabbitTemplate.convertAndSend(queueName, message);
+        send(message);
         log.info("Sent TEST measurement: deviceId={}, value={}", deviceId, value);
     }
+
+    private void send(MeasurementMessage message) {
+        rabbitTemplate.convertAndSend(queueName, message, m -> {
+            m.getMessageProperties().setHeader("deviceId", message.getDeviceId().toString());
+            return m;
+        });
+    }
 }
@@ -0,0 +1,39 @@
+package a3.load_balancer;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/balancer/replicas")
+public class BalancerController {
+
+    private final BalancerService balancerService;
+    private final ReplicaMonitor replicaMonitor;
+
+    public BalancerController(BalancerService balancerService, ReplicaMonitor replicaMonitor) {
+        this.balancerService = balancerService;
+        this.replicaMonitor = replicaMonitor;
+    }
+
+    @GetMapping
+    public List<String> getReplicas() {
+        return balancerService.getReplicas();
+    }
+
+    @GetMapping("/stats")
+    public Map<String, ReplicaMonitor.ReplicaStats> getReplicaStats() {
+        return replicaMonitor.getStats();
+    }
+
+    @PostMapping("/{queueName}")
+    public List<String> addReplica(@PathVariable String queueName) {
+        return balancerService.addReplica(queueName);
+    }
+
+    @DeleteMapping("/{queueName}")
+    public List<String> removeReplica(@PathVariable String queueName) {
+        return balancerService.removeReplica(queueName);
+    }
+}
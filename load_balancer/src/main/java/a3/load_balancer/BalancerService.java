@@ -1,30 +1,244 @@
 package a3.load_balancer;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class BalancerService {
 
     private static final Logger log = LoggerFactory.getLogger(BalancerService.class);
+    private static final String DEVICE_ID_HEADER = "deviceId";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
     private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+    private final ReplicaMonitor replicaMonitor;
+    private final MeterRegistry meterRegistry;
     private final AtomicInteger counter = new AtomicInteger(0);
-    private final String[] replicaQueues = {"monitoring_q_1", "monitoring_q_2"};
+    private final Map<String, Counter> routedCounters = new ConcurrentHashMap<>();
+    private final Map<UUID, String> pinnedDevices = new ConcurrentHashMap<>();
+    private final int virtualNodes;
+    private final boolean loadAware;
+    private volatile ConsistentHashRing ring;
 
-    public BalancerService(RabbitTemplate rabbitTemplate) {
+    public BalancerService(RabbitTemplate rabbitTemplate,
+                           AmqpAdmin amqpAdmin,
+                           ReplicaMonitor replicaMonitor,
+                           MeterRegistry meterRegistry,
+                           @Value("${balancer.replica-queues}") List<String> replicaQueues,
+                           @Value("${balancer.virtual-nodes:160}") int virtualNodes,
+                           @Value("${balancer.selection:hash}") String selection) {
         this.rabbitTemplate = rabbitTemplate;
+        this.amqpAdmin = amqpAdmin;
+        this.replicaMonitor = replicaMonitor;
+        this.meterRegistry = meterRegistry;
+        this.virtualNodes = virtualNodes;
+        this.loadAware = "load-aware".equalsIgnoreCase(selection);
+        this.ring = new ConsistentHashRing(replicaQueues, virtualNodes);
     }
 
+    /**
+     * Forwards the raw message, body bytes and properties unchanged. Only the deviceId is read,
+     * from the message header when the producer sets it, otherwise by a streaming scan of the body.
+     *
+     * <p>The inbound converter moves the delivery mode to {@code receivedDeliveryMode}, so it is
+     * copied back before the send; a message without one goes out persistent, as
+     * {@code convertAndSend} would send it.
+     */
     @RabbitListener(queues = "device.measurements")
-    public void distributeTraffic(Object messagePayload) {
-        int index = Math.abs(counter.getAndIncrement()) % replicaQueues.length;
-        String targetQueue = replicaQueues[index];
-        log.info("LB: Redirecting message to replica queue -> {}", targetQueue);
-        rabbitTemplate.convertAndSend(targetQueue, messagePayload);
+    public void distributeTraffic(Message message) {
+        MessageProperties props = message.getMessageProperties();
+        props.setDeliveryMode(props.getReceivedDeliveryMode() != null
+                ? props.getReceivedDeliveryMode()
+                : MessageDeliveryMode.PERSISTENT);
+
+        UUID deviceId = deviceIdOf(message);
+        String targetQueue = selectQueue(deviceId);
+        if (log.isDebugEnabled()) {
+            log.debug("LB: Redirecting message for device {} to replica queue -> {}", deviceId, targetQueue);
+        }
+        rabbitTemplate.send("", targetQueue, message);
+    }
+
+    @Scheduled(fixedDelayString = "${balancer.load.sample-interval-ms:2000}")
+    public void sampleReplicas() {
+        if (loadAware) {
+            ConsistentHashRing current = ring;
+            replicaMonitor.sample(current.nodes());
+            if (current.isEmpty()) {
+                pinnedDevices.clear();
+                return;
+            }
+            // Devices that stopped sending would otherwise stay pinned for good
+            pinnedDevices.entrySet().removeIf(pin ->
+                    !pinHolds(current, pin.getValue(), current.nodeFor(pin.getKey())));
+        }
+    }
+
+    public List<String> getReplicas() {
+        return ring.nodes();
+    }
+
+    int pinnedDeviceCount() {
+        return pinnedDevices.size();
+    }
+
+    public synchronized List<String> addReplica(String queueName) {
+        if (ring.nodes().contains(queueName)) {
+            return ring.nodes();
+        }
+        amqpAdmin.declareQueue(new Queue(queueName, true));
+
+        List<String> replicas = new ArrayList<>(ring.nodes());
+        replicas.add(queueName);
+        ring = new ConsistentHashRing(replicas, virtualNodes);
+        log.info("LB: Added replica {} -> {}", queueName, replicas);
+        return replicas;
+    }
+
+    public synchronized List<String> removeReplica(String queueName) {
+        List<String> replicas = new ArrayList<>(ring.nodes());
+        if (replicas.remove(queueName)) {
+            ring = new ConsistentHashRing(replicas, virtualNodes);
+            log.info("LB: Removed replica {} -> {}", queueName, replicas);
+        }
+        return replicas;
+    }
+
+    /**
+     * Hash mode always returns the device's ring owner. Load-aware mode walks the ring from
+     * there to the first replica that is up and not backlogged, then to the first one that is
+     * up, so a device only leaves its owner while the owner is down or overloaded.
+     *
+     * <p>A device that leaves its owner is pinned to the replica it moved to, so its readings
+     * keep arriving in order at one replica. It returns once the owner is up and not backlogged
+     * and the pinned queue looks drained. That check cannot see messages the pinned replica has
+     * prefetched but not acked, so readings around the switch back are only kept in order on a
+     * best-effort basis.
+     */
+    private String selectQueue(UUID deviceId) {
+        ConsistentHashRing current = ring;
+        if (current.isEmpty()) {
+            throw new IllegalStateException("No replica queues configured");
+        }
+
+        long keyHash = deviceId != null
+                ? ConsistentHashRing.hash(deviceId)
+                : ConsistentHashRing.hash(counter.getAndIncrement());
+        String primary = current.nodeFor(keyHash);
+        if (!loadAware) {
+            countRouted(primary, "primary");
+            return primary;
+        }
+
+        String target = deviceId != null ? pinnedTarget(current, deviceId, primary) : null;
+        if (target == null) {
+            target = current.nodeFor(keyHash,
+                    q -> replicaMonitor.isAvailable(q) && !replicaMonitor.isBacklogged(q));
+            if (target == null) {
+                target = current.nodeFor(keyHash, replicaMonitor::isAvailable);
+            }
+            if (target == null) {
+                target = primary;
+            }
+            if (deviceId != null && !target.equals(primary)) {
+                pinnedDevices.put(deviceId, target);
+            }
+        }
+
+        if (target.equals(primary)) {
+            countRouted(target, "primary");
+        } else {
+            countRouted(target, replicaMonitor.isAvailable(primary) ? "overflow" : "failover");
+        }
+        return target;
+    }
+
+    /**
+     * Returns the replica the device is pinned to, or null once the pin no longer holds.
+     */
+    private String pinnedTarget(ConsistentHashRing current, UUID deviceId, String primary) {
+        String pinned = pinnedDevices.get(deviceId);
+        if (pinned == null) {
+            return null;
+        }
+        if (pinHolds(current, pinned, primary)) {
+            return pinned;
+        }
+        pinnedDevices.remove(deviceId, pinned);
+        return null;
+    }
+
+    /**
+     * A pin holds until the owner has caught up and the pinned queue drained, or the pinned
+     * replica is down or was removed.
+     */
+    private boolean pinHolds(ConsistentHashRing current, String pinned, String primary) {
+        boolean ownerReady = replicaMonitor.isAvailable(primary) && !replicaMonitor.isBacklogged(primary);
+        boolean pinValid = current.nodes().contains(pinned) && replicaMonitor.isAvailable(pinned);
+        return pinValid && !(ownerReady && replicaMonitor.isDrained(pinned));
+    }
+
+    private void countRouted(String queue, String route) {
+        routedCounters.computeIfAbsent(queue + "|" + route, key -> Counter.builder("balancer.routed.messages")
+                        .tag("queue", queue)
+                        .tag("route", route)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    private UUID deviceIdOf(Message message) {
+        Object header = message.getMessageProperties().getHeader(DEVICE_ID_HEADER);
+        String value = header != null ? header.toString() : readDeviceId(message.getBody());
+        if (value == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            log.warn("LB: Invalid deviceId {}", value);
+            return null;
+        }
+    }
+
+    private String readDeviceId(byte[] body) {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (DEVICE_ID_HEADER.equals(field)) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            log.warn("LB: Could not read deviceId from message body: {}", e.getMessage());
+        }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package a3.load_balancer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Immutable consistent-hash ring with virtual nodes. Adding or removing one of N replicas
+ * only moves roughly 1/N of the keys.
+ */
+public final class ConsistentHashRing {
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final String[] owners;
+
+    public ConsistentHashRing(List<String> nodes, int virtualNodes) {
+        this.nodes = List.copyOf(nodes);
+
+        int size = this.nodes.size() * virtualNodes;
+        long[][] entries = new long[size][2];
+        int i = 0;
+        for (int n = 0; n < this.nodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                entries[i][0] = hash(this.nodes.get(n) + "#" + v);
+                entries[i][1] = n;
+                i++;
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int k = 0; k < size; k++) {
+            points[k] = entries[k][0];
+            owners[k] = this.nodes.get((int) entries[k][1]);
+        }
+    }
+
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return points.length == 0;
+    }
+
+    public String nodeFor(UUID key) {
+        return nodeFor(hash(key));
+    }
+
+    public String nodeFor(long keyHash) {
+        if (points.length == 0) {
+            throw new IllegalStateException("No replicas in the ring");
+        }
+        int index = Arrays.binarySearch(points, keyHash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * Walks the ring clockwise from the key's position and returns the first node that
+     * {@code accept} allows, or null if none does. With an always-true predicate this is
+     * {@link #nodeFor(long)}; skipping a node gives the same result as removing it.
+     */
+    public String nodeFor(long keyHash, Predicate<String> accept) {
+        if (points.length == 0) {
+            return null;
+        }
+        int start = Arrays.binarySearch(points, keyHash);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        for (int i = 0; i < points.length; i++) {
+            String owner = owners[(start + i) % points.length];
+            if (accept.test(owner)) {
+                return owner;
+            }
+        }
+        return null;
+    }
+
+    public static long hash(UUID key) {
+        return mix(key.getMostSignificantBits() ^ mix(key.getLeastSignificantBits()));
+    }
+
+    public static long hash(long key) {
+        return mix(key);
+    }
+
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
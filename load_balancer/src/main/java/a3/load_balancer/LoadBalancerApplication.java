@@ -2,7 +2,9 @@ package a3.load_balancer;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+@EnableScheduling
 @SpringBootApplication
 public class LoadBalancerApplication {
     public static void main(String[] args) {
@@ -0,0 +1,127 @@
+package a3.load_balancer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Samples depth and consumer count of each replica queue through a passive declare.
+ * A replica whose queue is missing or has no consumers is considered down; one whose
+ * depth is above the backlog threshold is considered backlogged.
+ */
+@Component
+public class ReplicaMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaMonitor.class);
+
+    private final AmqpAdmin amqpAdmin;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ReplicaStats> stats = new ConcurrentHashMap<>();
+    private final Map<String, Integer> emptySamples = new ConcurrentHashMap<>();
+    private final Map<String, List<Meter>> gauges = new ConcurrentHashMap<>();
+
+    @Value("${balancer.load.backlog-threshold:1000}")
+    private long backlogThreshold;
+
+    public ReplicaMonitor(AmqpAdmin amqpAdmin, MeterRegistry meterRegistry) {
+        this.amqpAdmin = amqpAdmin;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void sample(List<String> replicas) {
+        for (String removed : List.copyOf(stats.keySet())) {
+            if (!replicas.contains(removed)) {
+                stats.remove(removed);
+                emptySamples.remove(removed);
+                removeGauges(removed);
+            }
+        }
+
+        for (String queue : replicas) {
+            ReplicaStats sampled = sampleQueue(queue);
+            if (sampled == null) {
+                // Keep the last known state; a failed sample says nothing about the depth
+                if (stats.putIfAbsent(queue, new ReplicaStats(0, 0, true)) == null) {
+                    registerGauges(queue);
+                }
+                continue;
+            }
+            ReplicaStats previous = stats.put(queue, sampled);
+            emptySamples.put(queue, sampled.messageCount() == 0 ? emptySamples.getOrDefault(queue, 0) + 1 : 0);
+
+            if (previous == null) {
+                registerGauges(queue);
+            } else if (previous.available() != sampled.available()) {
+                log.warn("LB: Replica {} is now {}", queue, sampled.available() ? "UP" : "DOWN");
+            }
+        }
+    }
+
+    public boolean isAvailable(String queue) {
+        ReplicaStats s = stats.get(queue);
+        return s == null || s.available();
+    }
+
+    public boolean isBacklogged(String queue) {
+        ReplicaStats s = stats.get(queue);
+        return s != null && s.messageCount() > backlogThreshold;
+    }
+
+    /**
+     * Whether the queue had no ready messages at the last two samples. This is best effort: a
+     * passive declare does not count messages delivered to a consumer and not yet acked, up to its
+     * prefetch, nor those routed to the queue since the last sample.
+     */
+    public boolean isDrained(String queue) {
+        return emptySamples.getOrDefault(queue, 0) >= 2;
+    }
+
+    public Map<String, ReplicaStats> getStats() {
+        return Map.copyOf(stats);
+    }
+
+    /**
+     * Returns the queue's current stats, or {@code null} if it could not be sampled.
+     */
+    private ReplicaStats sampleQueue(String queue) {
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(queue);
+            if (info == null) {
+                return new ReplicaStats(0, 0, false);
+            }
+            return new ReplicaStats(info.getMessageCount(), info.getConsumerCount(), info.getConsumerCount() > 0);
+        } catch (Exception e) {
+            log.warn("LB: Could not sample replica queue {}: {}", queue, e.getMessage());
+            return null;
+        }
+    }
+
+    private void registerGauges(String queue) {
+        gauges.put(queue, List.of(
+                Gauge.builder("balancer.replica.depth", stats, s -> s.containsKey(queue) ? s.get(queue).messageCount() : 0)
+                        .tag("queue", queue)
+                        .register(meterRegistry),
+                Gauge.builder("balancer.replica.consumers", stats, s -> s.containsKey(queue) ? s.get(queue).consumerCount() : 0)
+                        .tag("queue", queue)
+                        .register(meterRegistry)));
+    }
+
+    private void removeGauges(String queue) {
+        List<Meter> removed = gauges.remove(queue);
+        if (removed != null) {
+            removed.forEach(meterRegistry::remove);
+        }
+    }
+
+    public record ReplicaStats(long messageCount, int consumerCount, boolean available) {}
+}
@@ -1,11 +1,13 @@
 package a3.load_balancer.config;
 
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.Queue;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
-import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
@@ -15,7 +17,9 @@ public class RabbitMQConfig {
     }
 
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public Declarables replicaQueues(@Value("${balancer.replica-queues}") List<String> replicaQueues) {
+        return new Declarables(replicaQueues.stream()
+                .map(name -> new Queue(name, true))
+                .toList());
     }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package a3.load_balancer;
+
+import com.rabbitmq.client.AMQP;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BalancerServiceTest {
+
+    private static final UUID DEVICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final byte[] BODY =
+            "{\"deviceId\":\"00000000-0000-0000-0000-000000000001\",\"value\":1.5}".getBytes(StandardCharsets.UTF_8);
+
+    private final CapturingTemplate template = new CapturingTemplate();
+    private final BalancerService balancer = balancer(template);
+
+    @Test
+    void forwardsAPersistentReadingAsPersistent() {
+        balancer.distributeTraffic(inbound(2));
+
+        Message forwarded = template.sent.get(0);
+        assertThat(forwarded.getMessageProperties().getDeliveryMode()).isEqualTo(MessageDeliveryMode.PERSISTENT);
+        assertThat(forwarded.getBody()).isEqualTo(BODY);
+    }
+
+    @Test
+    void forwardsATransientReadingAsTransient() {
+        balancer.distributeTraffic(inbound(1));
+
+        assertThat(template.sent.get(0).getMessageProperties().getDeliveryMode())
+                .isEqualTo(MessageDeliveryMode.NON_PERSISTENT);
+    }
+
+    @Test
+    void forwardsAReadingWithoutDeliveryModeAsPersistent() {
+        balancer.distributeTraffic(inbound(null));
+
+        assertThat(template.sent.get(0).getMessageProperties().getDeliveryMode())
+                .isEqualTo(MessageDeliveryMode.PERSISTENT);
+    }
+
+    @Test
+    void releasesThePinOnceTheOwnerRecoversAndThePinnedQueueStaysEmpty() {
+        String owner = new ConsistentHashRing(List.of("q1", "q2"), 160).nodeFor(DEVICE);
+        String other = owner.equals("q1") ? "q2" : "q1";
+        Map<String, QueueInformation> queues = new HashMap<>();
+        AmqpAdmin admin = mock(AmqpAdmin.class);
+        when(admin.getQueueInfo(anyString())).thenAnswer(call -> queues.get(call.<String>getArgument(0)));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BalancerService loadAware = new BalancerService(template, admin, new ReplicaMonitor(admin, registry),
+                registry, List.of("q1", "q2"), 160, "load-aware");
+
+        queues.put(owner, new QueueInformation(owner, 0, 0));
+        queues.put(other, new QueueInformation(other, 5, 1));
+        loadAware.sampleReplicas();
+        loadAware.distributeTraffic(inbound(2));
+        assertThat(template.routingKeys).containsExactly(other);
+        assertThat(loadAware.pinnedDeviceCount()).isEqualTo(1);
+
+        // The device sends nothing more; one empty sample of the pinned queue is not enough
+        queues.put(owner, new QueueInformation(owner, 0, 1));
+        queues.put(other, new QueueInformation(other, 0, 1));
+        loadAware.sampleReplicas();
+        assertThat(loadAware.pinnedDeviceCount()).isEqualTo(1);
+
+        loadAware.sampleReplicas();
+        assertThat(loadAware.pinnedDeviceCount()).isZero();
+    }
+
+    /**
+     * Builds the message the listener container hands over for a delivery with the given mode.
+     */
+    private static Message inbound(Integer deliveryMode) {
+        AMQP.BasicProperties source = new AMQP.BasicProperties.Builder()
+                .contentType(MessageProperties.CONTENT_TYPE_JSON)
+                .deliveryMode(deliveryMode)
+                .build();
+        MessageProperties props = new DefaultMessagePropertiesConverter()
+                .toMessageProperties(source, null, StandardCharsets.UTF_8.name());
+        return new Message(BODY, props);
+    }
+
+    private static BalancerService balancer(RabbitTemplate template) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AmqpAdmin admin = mock(AmqpAdmin.class);
+        return new BalancerService(template, admin, new ReplicaMonitor(admin, registry), registry,
+                List.of("q1", "q2"), 160, "hash");
+    }
+
+    private static class CapturingTemplate extends RabbitTemplate {
+
+        final List<Message> sent = new ArrayList<>();
+        final List<String> routingKeys = new ArrayList<>();
+
+        @Override
+        public void send(String exchange, String routingKey, Message message) {
+            sent.add(message);
+            routingKeys.add(routingKey);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package a3.load_balancer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConsistentHashRingTest {
+
+    private static final List<String> REPLICAS = List.of("q1", "q2", "q3", "q4");
+    private static final int KEYS = 20_000;
+
+    @Test
+    void sameKeyAlwaysMapsToSameNode() {
+        ConsistentHashRing ring = new ConsistentHashRing(REPLICAS, 160);
+        ConsistentHashRing rebuilt = new ConsistentHashRing(REPLICAS, 160);
+
+        for (UUID key : keys()) {
+            assertThat(ring.nodeFor(key)).isEqualTo(rebuilt.nodeFor(key));
+        }
+    }
+
+    @Test
+    void spreadsKeysRoughlyEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(REPLICAS, 160);
+        Map<String, Integer> counts = new HashMap<>();
+        for (UUID key : keys()) {
+            counts.merge(ring.nodeFor(key), 1, Integer::sum);
+        }
+
+        int expected = KEYS / REPLICAS.size();
+        assertThat(counts).containsOnlyKeys(REPLICAS);
+        assertThat(counts.values()).allSatisfy(count ->
+                assertThat(count).isBetween(expected * 3 / 4, expected * 5 / 4));
+    }
+
+    @Test
+    void removingANodeOnlyMovesItsKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(REPLICAS, 160);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("q1", "q2", "q4"), 160);
+
+        for (UUID key : keys()) {
+            String owner = before.nodeFor(key);
+            if (!owner.equals("q3")) {
+                assertThat(after.nodeFor(key)).isEqualTo(owner);
+            }
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesKeysToIt() {
+        ConsistentHashRing before = new ConsistentHashRing(REPLICAS, 160);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("q1", "q2", "q3", "q4", "q5"), 160);
+
+        int moved = 0;
+        for (UUID key : keys()) {
+            String owner = after.nodeFor(key);
+            if (!owner.equals(before.nodeFor(key))) {
+                assertThat(owner).isEqualTo("q5");
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(KEYS / 5 * 3 / 4, KEYS / 5 * 5 / 4);
+    }
+
+    @Test
+    void skippingANodeMatchesRemovingIt() {
+        ConsistentHashRing ring = new ConsistentHashRing(REPLICAS, 160);
+        ConsistentHashRing without = new ConsistentHashRing(List.of("q1", "q3", "q4"), 160);
+
+        for (UUID key : keys()) {
+            long hash = ConsistentHashRing.hash(key);
+            assertThat(ring.nodeFor(hash, node -> !node.equals("q2"))).isEqualTo(without.nodeFor(hash));
+            assertThat(ring.nodeFor(hash, node -> true)).isEqualTo(ring.nodeFor(hash));
+        }
+    }
+
+    @Test
+    void returnsNullWhenNoNodeIsAccepted() {
+        ConsistentHashRing ring = new ConsistentHashRing(REPLICAS, 16);
+
+        assertThat(ring.nodeFor(42L, node -> false)).isNull();
+    }
+
+    @Test
+    void emptyRing() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(), 160);
+
+        assertThat(ring.isEmpty()).isTrue();
+        assertThat(ring.nodeFor(42L, node -> true)).isNull();
+        assertThatThrownBy(() -> ring.nodeFor(UUID.randomUUID())).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static List<UUID> keys() {
+        Random random = new Random(7);
+        List<UUID> keys = new ArrayList<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            keys.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        return keys;
+    }
+}
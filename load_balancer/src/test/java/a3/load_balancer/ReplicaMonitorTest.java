@@ -0,0 +1,80 @@
+package a3.load_balancer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaMonitorTest {
+
+    private final Map<String, QueueInformation> queues = new HashMap<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ReplicaMonitor monitor = monitor();
+
+    @Test
+    void isDrainedAfterTwoEmptySamples() {
+        queues.put("q1", new QueueInformation("q1", 3, 1));
+        monitor.sample(List.of("q1"));
+        assertThat(monitor.isDrained("q1")).isFalse();
+
+        queues.put("q1", new QueueInformation("q1", 0, 1));
+        monitor.sample(List.of("q1"));
+        assertThat(monitor.isDrained("q1")).isFalse();
+
+        monitor.sample(List.of("q1"));
+        assertThat(monitor.isDrained("q1")).isTrue();
+
+        queues.put("q1", new QueueInformation("q1", 1, 1));
+        monitor.sample(List.of("q1"));
+        assertThat(monitor.isDrained("q1")).isFalse();
+    }
+
+    @Test
+    void doesNotCountAFailedSampleAsEmpty() {
+        queues.put("q1", new QueueInformation("q1", 0, 1));
+        monitor.sample(List.of("q1"));
+        queues.put("q1", null);
+        monitor.sample(List.of("q1"));
+
+        assertThat(monitor.isDrained("q1")).isFalse();
+        assertThat(monitor.isAvailable("q1")).isTrue();
+    }
+
+    @Test
+    void removesTheGaugesOfARemovedReplica() {
+        queues.put("q1", new QueueInformation("q1", 4, 1));
+        queues.put("q2", new QueueInformation("q2", 0, 1));
+        monitor.sample(List.of("q1", "q2"));
+        assertThat(registry.find("balancer.replica.depth").tag("queue", "q1").gauge().value()).isEqualTo(4);
+
+        monitor.sample(List.of("q2"));
+
+        assertThat(registry.find("balancer.replica.depth").tag("queue", "q1").gauge()).isNull();
+        assertThat(registry.find("balancer.replica.consumers").tag("queue", "q1").gauge()).isNull();
+        assertThat(registry.find("balancer.replica.depth").tag("queue", "q2").gauge()).isNotNull();
+        assertThat(monitor.getStats()).containsOnlyKeys("q2");
+    }
+
+    private ReplicaMonitor monitor() {
+        AmqpAdmin admin = mock(AmqpAdmin.class);
+        when(admin.getQueueInfo(anyString())).thenAnswer(call -> {
+            String queue = call.getArgument(0);
+            if (queues.containsKey(queue) && queues.get(queue) == null) {
+                throw new AmqpIOException(new IOException("connection reset"));
+            }
+            return queues.get(queue);
+        });
+        return new ReplicaMonitor(admin, registry);
+    }
+}
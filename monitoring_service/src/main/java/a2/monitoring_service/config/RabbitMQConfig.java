@@ -3,11 +3,16 @@ package a2.monitoring_service.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -23,6 +28,30 @@ public class RabbitMQConfig {
     @Value("${monitoring.queue.name:monitoring_q_1}")
     private String queueName;
 
+    @Value("${monitoring.consumer.prefetch:250}")
+    private int prefetch;
+
+    @Value("${monitoring.consumer.concurrency:1}")
+    private int concurrency;
+
+    @Value("${monitoring.consumer.max-concurrency:1}")
+    private int maxConcurrency;
+
+    @Value("${monitoring.consumer.batch-size:100}")
+    private int batchSize;
+
+    @Value("${monitoring.consumer.batch-timeout-ms:1000}")
+    private long batchTimeoutMs;
+
+    @Value("${monitoring.consumer.retry.max-attempts:3}")
+    private int retryMaxAttempts;
+
+    @Value("${monitoring.consumer.retry.initial-interval-ms:1000}")
+    private long retryInitialIntervalMs;
+
+    @Value("${monitoring.consumer.retry.max-interval-ms:10000}")
+    private long retryMaxIntervalMs;
+
     @Bean
     public Queue measurementsQueue() {
         return new Queue(measurementsQueueName, true);
@@ -38,6 +67,16 @@ public class RabbitMQConfig {
         return new Queue(queueName, true);
     }
 
+    /**
+     * Batches that still fail after the retries end up here, so they do not block the replica
+     * queue. The replica queues are declared by the load balancer without dead-letter arguments,
+     * so the batch listener republishes to this queue itself.
+     */
+    @Bean
+    public Queue monitoringDeadLetterQueue() {
+        return new Queue(deadLetterQueueName(), true);
+    }
+
     @Bean
     public ObjectMapper rabbitObjectMapper() {
         ObjectMapper mapper = new ObjectMapper();
@@ -58,4 +97,55 @@ public class RabbitMQConfig {
         template.setMessageConverter(jacksonMessageConverter);
         return template;
     }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory measurementContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            MessageConverter jacksonMessageConverter) {
+        return newMeasurementFactory(configurer, connectionFactory, jacksonMessageConverter);
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory measurementBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            MessageConverter jacksonMessageConverter,
+            RabbitTemplate rabbitTemplate) {
+        SimpleRabbitListenerContainerFactory factory =
+                newMeasurementFactory(configurer, connectionFactory, jacksonMessageConverter);
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchTimeoutMs);
+
+        // A failed batch is retried in place, then moved to the dead-letter queue with the
+        // exception in its headers and acked, instead of being redelivered forever
+        RepublishMessageRecoverer republisher = new RepublishMessageRecoverer(rabbitTemplate, "", deadLetterQueueName());
+        MessageBatchRecoverer recoverer = (messages, cause) -> messages.forEach(message -> republisher.recover(message, cause));
+        factory.setAdviceChain(RetryInterceptorBuilder.stateless()
+                .maxAttempts(retryMaxAttempts)
+                .backOffOptions(retryInitialIntervalMs, 2.0, retryMaxIntervalMs)
+                .recoverer(recoverer)
+                .build());
+        return factory;
+    }
+
+    private String deadLetterQueueName() {
+        return queueName + ".dlq";
+    }
+
+    private SimpleRabbitListenerContainerFactory newMeasurementFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            MessageConverter jacksonMessageConverter) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setMessageConverter(jacksonMessageConverter);
+        factory.setPrefetchCount(prefetch);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(Math.max(concurrency, maxConcurrency));
+        return factory;
+    }
 }
\ No newline at end of file
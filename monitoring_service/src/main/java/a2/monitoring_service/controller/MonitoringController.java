@@ -1,18 +1,34 @@
 package a2.monitoring_service.controller;
 
+import a2.monitoring_service.dto.ConsumptionBucketDto;
 import a2.monitoring_service.dto.HourlyConsumptionDto;
-import a2.monitoring_service.model.HourlyConsumption;
+import a2.monitoring_service.model.HourlyTotal;
+import a2.monitoring_service.model.Resolution;
+import a2.monitoring_service.rawstore.RawMeasurementStore;
 import a2.monitoring_service.repository.HourlyConsumptionRepository;
+import a2.monitoring_service.service.ConsumptionRangeService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -22,9 +38,27 @@ public class MonitoringController {
 
     private static final Logger log = LoggerFactory.getLogger(MonitoringController.class);
     private final HourlyConsumptionRepository repository;
+    private final ConsumptionRangeService rangeService;
+    private final ObjectMapper objectMapper;
+    private final Optional<RawMeasurementStore> rawStore;
 
-    public MonitoringController(HourlyConsumptionRepository repository) {
+    @Value("${monitoring.range.max-buckets:5000}")
+    private long maxBuckets;
+
+    @Value("${monitoring.range.stream-threshold:1000}")
+    private long streamThreshold;
+
+    @Value("${monitoring.raw-store.max-scan-days:31}")
+    private long maxRawScanDays;
+
+    public MonitoringController(HourlyConsumptionRepository repository,
+                                ConsumptionRangeService rangeService,
+                                ObjectMapper objectMapper,
+                                Optional<RawMeasurementStore> rawStore) {
         this.repository = repository;
+        this.rangeService = rangeService;
+        this.objectMapper = objectMapper;
+        this.rawStore = rawStore;
     }
 
     @GetMapping("/{deviceId}")
@@ -37,15 +71,14 @@ public class MonitoringController {
         LocalDateTime start = date.atStartOfDay();
         LocalDateTime end = start.plusDays(1);
 
-        List<HourlyConsumption> list = repository
-                .findByDeviceIdAndHourTimestampBetween(deviceId, start, end);
+        List<HourlyTotal> list = repository.findHourlyTotals(deviceId, start, end);
 
         log.info("Found {} hourly consumption records", list.size());
 
         Map<Integer, Double> hourToConsumption = list.stream()
                 .collect(Collectors.toMap(
-                        h -> h.getHourTimestamp().getHour(),
-                        HourlyConsumption::getTotalConsumption,
+                        h -> h.hour().getHour(),
+                        HourlyTotal::total,
                         Double::sum
                 ));
 
@@ -57,6 +90,94 @@ public class MonitoringController {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Consumption in {@code [from, to)} aggregated per hour, day, week or month. Results above
+     * the stream threshold are written as they are read instead of being collected first.
+     */
+    @GetMapping("/{deviceId}/range")
+    public ResponseEntity<?> getRangeConsumption(
+            @PathVariable UUID deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "hour") String resolution
+    ) {
+        Resolution bucketSize;
+        try {
+            bucketSize = Resolution.parse(resolution);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "'from' must be before 'to'"));
+        }
+        long buckets = bucketSize.bucketCount(from, to);
+        if (buckets > maxBuckets) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    "Range has " + buckets + " buckets, at most " + maxBuckets + " allowed; use a coarser resolution"));
+        }
+
+        log.info("Fetching consumption for deviceId={}, from={}, to={}, resolution={} ({} buckets)",
+                deviceId, from, to, bucketSize, buckets);
+
+        if (buckets <= streamThreshold) {
+            List<ConsumptionBucketDto> result = new ArrayList<>((int) buckets);
+            rangeService.forEachBucket(deviceId, from, to, bucketSize, result::add);
+            return ResponseEntity.ok(result);
+        }
+
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(output)) {
+                generator.writeStartArray();
+                rangeService.forEachBucket(deviceId, from, to, bucketSize, bucket -> writeElement(generator, bucket));
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Raw readings in {@code [from, to)}, streamed from the raw measurement store when it is enabled.
+     */
+    @GetMapping("/{deviceId}/raw")
+    public ResponseEntity<?> getRawMeasurements(
+            @PathVariable UUID deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    ) {
+        if (rawStore.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("error", "Raw measurement storage is disabled"));
+        }
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "'from' must be before 'to'"));
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxRawScanDays) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    "Raw readings can be read for at most " + maxRawScanDays + " days at a time"));
+        }
+
+        log.info("Scanning raw measurements for deviceId={}, from={}, to={}", deviceId, from, to);
+
+        RawMeasurementStore store = rawStore.get();
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(output)) {
+                generator.writeStartArray();
+                store.scan(deviceId,
+                        from.atZone(ZoneId.systemDefault()).toInstant(),
+                        to.atZone(ZoneId.systemDefault()).toInstant(),
+                        reading -> writeElement(generator, reading));
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static void writeElement(JsonGenerator generator, Object element) {
+        try {
+            generator.writeObject(element);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
     @GetMapping("/health")
     public String health() {
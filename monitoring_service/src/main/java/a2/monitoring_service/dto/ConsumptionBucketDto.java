@@ -0,0 +1,15 @@
+package a2.monitoring_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsumptionBucketDto {
+    private LocalDateTime start;
+    private Double consumption;
+}
@@ -0,0 +1,40 @@
+package a2.monitoring_service.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(
+        name = "consumption_alerts",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_consumption_alerts_device_hour",
+                columnNames = {"device_id", "hour_timestamp"}
+        )
+)
+@Getter
+@Setter
+@NoArgsConstructor
+public class ConsumptionAlert {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "device_id", nullable = false)
+    private UUID deviceId;
+
+    @Column(name = "hour_timestamp", nullable = false)
+    private LocalDateTime hourTimestamp;
+
+    @Column(name = "level", nullable = false)
+    private int level;
+
+    @Column(name = "notified_at", nullable = false)
+    private Instant notifiedAt;
+}
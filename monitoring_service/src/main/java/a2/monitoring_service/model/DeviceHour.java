@@ -0,0 +1,6 @@
+package a2.monitoring_service.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record DeviceHour(UUID deviceId, LocalDateTime hourStart) {}
@@ -9,7 +9,13 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "hourly_consumption")
+@Table(
+        name = "hourly_consumption",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_hourly_consumption_device_hour",
+                columnNames = {"device_id", "hour_timestamp"}
+        )
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,8 @@
+package a2.monitoring_service.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read projection of an {@link HourlyConsumption} row: only the hour and its total.
+ */
+public record HourlyTotal(LocalDateTime hour, double total) {}
@@ -0,0 +1,62 @@
+package a2.monitoring_service.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+/**
+ * Bucket size of a consumption range query. Weeks start on Monday, matching PostgreSQL's
+ * {@code date_trunc('week', ...)}.
+ */
+public enum Resolution {
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS),
+    WEEK(ChronoUnit.WEEKS),
+    MONTH(ChronoUnit.MONTHS);
+
+    private final ChronoUnit unit;
+
+    Resolution(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public static Resolution parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown resolution '" + value + "', expected hour, day, week or month");
+        }
+    }
+
+    /**
+     * Unit name understood by PostgreSQL's {@code date_trunc}.
+     */
+    public String sqlUnit() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public LocalDateTime bucketStart(LocalDateTime time) {
+        return switch (this) {
+            case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+            case WEEK -> time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        };
+    }
+
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return bucketStart.plus(1, unit);
+    }
+
+    /**
+     * Number of buckets that overlap the half-open interval {@code [from, to)}.
+     */
+    public long bucketCount(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return 0;
+        }
+        return unit.between(bucketStart(from), to.minusNanos(1)) + 1;
+    }
+}
@@ -0,0 +1,38 @@
+package a2.monitoring_service.rawstore;
+
+/**
+ * Reads bit fields written by {@link BitWriter}.
+ */
+final class BitReader {
+
+    private final byte[] bytes;
+    private long position;
+
+    BitReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    long read(int bits) {
+        long result = 0;
+        while (bits > 0) {
+            int available = 8 - (int) (position & 7);
+            int n = Math.min(available, bits);
+            int current = bytes[(int) (position >>> 3)] & 0xFF;
+            result = (result << n) | ((current >>> (available - n)) & ((1 << n) - 1));
+            bits -= n;
+            position += n;
+        }
+        return result;
+    }
+
+    boolean readBit() {
+        return read(1) == 1;
+    }
+
+    /**
+     * Reads a {@code bits}-wide two's complement field.
+     */
+    long readSigned(int bits) {
+        return read(bits) << (64 - bits) >> (64 - bits);
+    }
+}
@@ -0,0 +1,34 @@
+package a2.monitoring_service.rawstore;
+
+import java.util.Arrays;
+
+/**
+ * Appends bit fields, most significant bit first, to a growing byte array.
+ */
+final class BitWriter {
+
+    private byte[] bytes = new byte[64];
+    private long bitLength;
+
+    /**
+     * Writes the low {@code bits} bits of {@code value} (1 to 64).
+     */
+    void write(long value, int bits) {
+        while (bits > 0) {
+            int index = (int) (bitLength >>> 3);
+            if (index == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int free = 8 - (int) (bitLength & 7);
+            int n = Math.min(free, bits);
+            int chunk = (int) (value >>> (bits - n)) & ((1 << n) - 1);
+            bytes[index] |= (byte) (chunk << (free - n));
+            bits -= n;
+            bitLength += n;
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, (int) ((bitLength + 7) >>> 3));
+    }
+}
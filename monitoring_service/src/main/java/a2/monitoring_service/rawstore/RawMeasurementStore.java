@@ -0,0 +1,433 @@
+package a2.monitoring_service.rawstore;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Optional store of raw readings in local files, one per UTC day. Readings are compressed per
+ * device with {@link SeriesEncoder} and appended to the day's file as blocks once a block is full,
+ * its day has passed, or the service stops. Blocks start with a header naming the device and time
+ * span, so a scan for one device reads the headers sequentially and skips other blocks.
+ *
+ * <p>Block layout: magic, device id, reading count, min and max timestamp (epoch seconds, the
+ * resolution readings are stored at), first and last log sequence, payload length, payload CRC32,
+ * payload. A torn block at the end of a file, left by a crash, is cut off on startup, so blocks
+ * written after it stay readable.
+ *
+ * <p>Readings fed from the measurement log carry their log sequence. Every reading before the
+ * first one of the oldest open block is on disk, which {@link #durableSequence()} reports; open
+ * blocks fill for up to a day, so that holds back the log by as much. {@link #replay} checks
+ * readings past it against the sequence ranges of the blocks on disk, so a replay does not store
+ * them twice.
+ */
+@Component
+@ConditionalOnProperty(name = "monitoring.raw-store.enabled", havingValue = "true")
+public class RawMeasurementStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RawMeasurementStore.class);
+
+    private static final int MAGIC = 0x52415751;
+    private static final int HEADER_BYTES = 64;
+    private static final String FILE_SUFFIX = ".raw";
+
+    private final Path directory;
+    private final int blockReadings;
+    private final int retentionDays;
+    private final Map<DeviceDay, SeriesEncoder> openBlocks = new HashMap<>();
+    private final Map<DeviceDay, SequenceRange> openBlockSequences = new HashMap<>();
+    private final Map<LocalDate, Map<UUID, Long>> writtenSequences = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private long appliedSequence;
+
+    public RawMeasurementStore(@Value("${monitoring.raw-store.directory:./data/raw}") Path directory,
+                               @Value("${monitoring.raw-store.block-readings:144}") int blockReadings,
+                               @Value("${monitoring.raw-store.retention-days:0}") int retentionDays) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.blockReadings = blockReadings;
+        this.retentionDays = retentionDays;
+        truncateTornBlocks();
+        log.info("Raw measurement store in {}", this.directory.toAbsolutePath());
+    }
+
+    public void append(UUID deviceId, Instant timestamp, double value) {
+        append(deviceId, timestamp, value, 0);
+    }
+
+    /**
+     * Appends a reading taken from the measurement log; {@code sequence} is its log sequence.
+     */
+    public void append(UUID deviceId, Instant timestamp, double value, long sequence) {
+        DeviceDay key = new DeviceDay(deviceId, LocalDate.ofInstant(timestamp, ZoneOffset.UTC));
+        lock.lock();
+        try {
+            SeriesEncoder block = openBlocks.computeIfAbsent(key, k -> new SeriesEncoder());
+            block.append(timestamp.getEpochSecond(), value);
+            if (sequence > 0) {
+                openBlockSequences.computeIfAbsent(key, k -> new SequenceRange(sequence)).last = sequence;
+                appliedSequence = Math.max(appliedSequence, sequence);
+            }
+            if (block.count() >= blockReadings && writeBlock(key, block)) {
+                openBlocks.remove(key);
+                openBlockSequences.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Highest log sequence whose reading, and every reading before it, is written to disk.
+     */
+    public long durableSequence() {
+        lock.lock();
+        try {
+            return openBlockSequences.values().stream()
+                    .mapToLong(range -> range.first - 1)
+                    .min()
+                    .orElse(appliedSequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a reading replayed from the measurement log, unless a block on disk holds it
+     * already. The blocks of a device and day hold its readings in sequence order, one block after
+     * the other, so that is the case up to the last sequence of its last block.
+     */
+    public void replay(UUID deviceId, Instant timestamp, double value, long sequence) throws IOException {
+        LocalDate day = LocalDate.ofInstant(timestamp, ZoneOffset.UTC);
+        lock.lock();
+        try {
+            // Blocks written during the replay are not in the index, they only hold later sequences
+            Map<UUID, Long> written = writtenSequences.get(day);
+            if (written == null) {
+                written = readWrittenSequences(day);
+                writtenSequences.put(day, written);
+            }
+            if (sequence <= written.getOrDefault(deviceId, 0L)) {
+                appliedSequence = Math.max(appliedSequence, sequence);
+                return;
+            }
+            append(deviceId, timestamp, value, sequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes the device's readings in {@code [from, to)} to {@code action} in time order, including
+     * readings not written to disk yet. Timestamps come back truncated to the second.
+     */
+    public void scan(UUID deviceId, Instant from, Instant to, Consumer<RawReading> action) throws IOException {
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+        LocalDate lastDay = LocalDate.ofInstant(to.minusMillis(1), ZoneOffset.UTC);
+
+        for (LocalDate day = LocalDate.ofInstant(from, ZoneOffset.UTC); !day.isAfter(lastDay); day = day.plusDays(1)) {
+            List<RawReading> readings = new ArrayList<>();
+            SeriesDecoder.ReadingSink sink = (timestamp, value) -> {
+                if (timestamp * 1000 >= fromMillis && timestamp * 1000 < toMillis) {
+                    readings.add(new RawReading(Instant.ofEpochSecond(timestamp), value));
+                }
+            };
+
+            // The file length and open block are taken together, so a block written meanwhile
+            // is neither missed nor read twice
+            Path file = fileFor(day);
+            long fileSize;
+            byte[] openBytes = null;
+            int openCount = 0;
+            lock.lock();
+            try {
+                fileSize = Files.exists(file) ? Files.size(file) : 0;
+                SeriesEncoder open = openBlocks.get(new DeviceDay(deviceId, day));
+                if (open != null) {
+                    openBytes = open.toByteArray();
+                    openCount = open.count();
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (fileSize > 0) {
+                scanFile(file, fileSize, deviceId, fromMillis, toMillis, sink);
+            }
+            if (openBytes != null) {
+                SeriesDecoder.decode(openBytes, openCount, sink);
+            }
+
+            // Blocks are in arrival order; readings that arrived late are put back in place
+            readings.sort(Comparator.comparing(RawReading::timestamp));
+            readings.forEach(action);
+        }
+    }
+
+    /**
+     * Writes the blocks of past days, which receive no more readings except late ones.
+     */
+    @Scheduled(fixedDelayString = "${monitoring.raw-store.flush-interval-ms:60000}")
+    public void flushClosedDays() {
+        flush(LocalDate.now(ZoneOffset.UTC));
+        lock.lock();
+        try {
+            writtenSequences.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush(LocalDate.MAX);
+    }
+
+    @Scheduled(cron = "${monitoring.raw-store.cleanup-cron:0 30 3 * * *}")
+    public void deleteExpiredFiles() throws IOException {
+        if (retentionDays <= 0) {
+            return;
+        }
+        LocalDate oldestKept = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                LocalDate day = dayOf(file);
+                if (day != null && day.isBefore(oldestKept)) {
+                    Files.delete(file);
+                    log.info("Deleted expired raw measurement file {}", file.getFileName());
+                }
+            }
+        }
+    }
+
+    private void flush(LocalDate before) {
+        lock.lock();
+        try {
+            Iterator<Map.Entry<DeviceDay, SeriesEncoder>> blocks = openBlocks.entrySet().iterator();
+            while (blocks.hasNext()) {
+                Map.Entry<DeviceDay, SeriesEncoder> entry = blocks.next();
+                if (entry.getKey().day().isBefore(before) && writeBlock(entry.getKey(), entry.getValue())) {
+                    blocks.remove();
+                    openBlockSequences.remove(entry.getKey());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a block to its day's file. On failure the file is cut back to its previous size, so
+     * it never ends in a torn block that would hide later ones, and the block stays open.
+     */
+    private boolean writeBlock(DeviceDay key, SeriesEncoder block) {
+        byte[] payload = block.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        SequenceRange sequences = openBlockSequences.getOrDefault(key, SequenceRange.NONE);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(MAGIC)
+                .putLong(key.deviceId().getMostSignificantBits())
+                .putLong(key.deviceId().getLeastSignificantBits())
+                .putInt(block.count())
+                .putLong(block.minTimestamp())
+                .putLong(block.maxTimestamp())
+                .putLong(sequences.first)
+                .putLong(sequences.last)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+
+        try (FileChannel channel = openForAppend(fileFor(key.day()))) {
+            long size = channel.size();
+            try {
+                channel.position(size);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                return true;
+            } catch (IOException e) {
+                channel.truncate(size);
+                throw e;
+            }
+        } catch (IOException e) {
+            log.error("Failed to write raw block for device {} on {}, will retry: {}",
+                    key.deviceId(), key.day(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Last log sequence on disk per device, from the block headers of the day's file.
+     */
+    private Map<UUID, Long> readWrittenSequences(LocalDate day) throws IOException {
+        Map<UUID, Long> written = new HashMap<>();
+        Path file = fileFor(day);
+        if (!Files.exists(file)) {
+            return written;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (position + HEADER_BYTES <= size) {
+                header.clear();
+                readFully(channel, header, position);
+                int length = header.getInt(HEADER_BYTES - 8);
+                if (header.getInt(0) != MAGIC || length < 0) {
+                    break;
+                }
+                written.merge(new UUID(header.getLong(4), header.getLong(12)), header.getLong(48), Math::max);
+                position += HEADER_BYTES + length;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Cuts each day file back to its last complete block. A crash while appending leaves part of
+     * a block, or a zero-filled tail, which would hide every block appended after it.
+     */
+    private void truncateTornBlocks() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (dayOf(file) == null) {
+                    continue;
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    long size = channel.size();
+                    long position = 0;
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                    while (position + HEADER_BYTES <= size) {
+                        header.clear();
+                        readFully(channel, header, position);
+                        int magic = header.getInt(0);
+                        int length = header.getInt(HEADER_BYTES - 8);
+                        if (magic != MAGIC && magic != 0) {
+                            // Not a torn write; leave the file as it is
+                            log.warn("Unrecognised raw block at offset {} of {}", position, file.getFileName());
+                            position = size;
+                            break;
+                        }
+                        if (magic == 0 || length < 0 || position + HEADER_BYTES + length > size) {
+                            break;
+                        }
+                        position += HEADER_BYTES + length;
+                    }
+                    if (position < size) {
+                        log.warn("Truncating torn raw block at offset {} of {}", position, file.getFileName());
+                        channel.truncate(position);
+                    }
+                }
+            }
+        }
+    }
+
+    FileChannel openForAppend(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private static void scanFile(Path file, long size, UUID deviceId, long fromMillis, long toMillis,
+                                 SeriesDecoder.ReadingSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (position + HEADER_BYTES <= size) {
+                header.clear();
+                readFully(channel, header, position);
+                header.flip();
+
+                int magic = header.getInt();
+                UUID blockDevice = new UUID(header.getLong(), header.getLong());
+                int count = header.getInt();
+                long minTimestamp = header.getLong();
+                long maxTimestamp = header.getLong();
+                header.position(header.position() + 16);
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (magic != MAGIC || length < 0 || position + HEADER_BYTES + length > size) {
+                    log.warn("Stopping scan of {} at torn block at offset {}", file.getFileName(), position);
+                    return;
+                }
+
+                if (blockDevice.equals(deviceId) && maxTimestamp * 1000 >= fromMillis && minTimestamp * 1000 < toMillis) {
+                    ByteBuffer payload = ByteBuffer.allocate(length);
+                    readFully(channel, payload, position + HEADER_BYTES);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload.array());
+                    if ((int) crc.getValue() == checksum) {
+                        SeriesDecoder.decode(payload.array(), count, sink);
+                    } else {
+                        log.warn("Skipping corrupt raw block in {} at offset {}", file.getFileName(), position);
+                    }
+                }
+                position += HEADER_BYTES + length;
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    private Path fileFor(LocalDate day) {
+        return directory.resolve(day + FILE_SUFFIX);
+    }
+
+    private static LocalDate dayOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(FILE_SUFFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name.substring(0, name.length() - FILE_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private record DeviceDay(UUID deviceId, LocalDate day) {}
+
+    private static final class SequenceRange {
+        private static final SequenceRange NONE = new SequenceRange(0);
+
+        private final long first;
+        private long last;
+
+        private SequenceRange(long first) {
+            this.first = first;
+            this.last = first;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package a2.monitoring_service.rawstore;
+
+import java.time.Instant;
+
+public record RawReading(Instant timestamp, double value) {}
@@ -0,0 +1,64 @@
+package a2.monitoring_service.rawstore;
+
+/**
+ * Decodes a series written by {@link SeriesEncoder}.
+ */
+final class SeriesDecoder {
+
+    interface ReadingSink {
+        void accept(long timestamp, double value);
+    }
+
+    private SeriesDecoder() {
+    }
+
+    static void decode(byte[] bytes, int count, ReadingSink sink) {
+        if (count == 0) {
+            return;
+        }
+        BitReader in = new BitReader(bytes);
+        long timestamp = in.read(64);
+        long value = in.read(64);
+        sink.accept(timestamp, Double.longBitsToDouble(value));
+
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            if (i == 1) {
+                delta = in.read(SeriesEncoder.FIRST_DELTA_BITS);
+                if (delta == SeriesEncoder.FIRST_DELTA_ESCAPE) {
+                    delta = in.read(64);
+                }
+            } else {
+                delta += readDeltaOfDelta(in);
+            }
+            timestamp += delta;
+
+            if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.read(5);
+                    trailing = 64 - leading - ((int) in.read(6) + 1);
+                }
+                value ^= in.read(64 - leading - trailing) << trailing;
+            }
+            sink.accept(timestamp, Double.longBitsToDouble(value));
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        if (!in.readBit()) {
+            return 0;
+        }
+        if (!in.readBit()) {
+            return in.readSigned(7);
+        }
+        if (!in.readBit()) {
+            return in.readSigned(9);
+        }
+        if (!in.readBit()) {
+            return in.readSigned(12);
+        }
+        return in.read(64);
+    }
+}
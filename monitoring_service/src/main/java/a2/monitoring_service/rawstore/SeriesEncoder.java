@@ -0,0 +1,122 @@
+package a2.monitoring_service.rawstore;
+
+/**
+ * Compresses a series of (timestamp, value) readings as described for Facebook's Gorilla TSDB.
+ * Timestamps are in epoch seconds: the first is stored whole, the first delta in a 14-bit field,
+ * and the rest as the delta of their delta, which is a single bit for readings at a fixed interval
+ * and 9 bits for up to a minute of jitter. Values are XORed with the previous one and only the
+ * differing bits are kept, reusing the previous leading/trailing zero window when it fits.
+ */
+final class SeriesEncoder {
+
+    static final int FIRST_DELTA_BITS = 14;
+    /**
+     * First delta value that means a full 64-bit delta follows, for gaps over four and a half
+     * hours and readings that arrive out of order.
+     */
+    static final long FIRST_DELTA_ESCAPE = (1L << FIRST_DELTA_BITS) - 1;
+
+    private final BitWriter out = new BitWriter();
+    private int count;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+
+    private long previousTimestamp;
+    private long previousDelta;
+    private long previousValue;
+    private int previousLeading = -1;
+    private int previousTrailing;
+
+    /**
+     * Appends a reading; {@code timestamp} is in epoch seconds.
+     */
+    void append(long timestamp, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            out.write(timestamp, 64);
+            out.write(bits, 64);
+        } else {
+            long delta = timestamp - previousTimestamp;
+            if (count == 1) {
+                writeFirstDelta(delta);
+            } else {
+                writeDeltaOfDelta(delta - previousDelta);
+            }
+            writeValue(bits ^ previousValue);
+            previousDelta = delta;
+        }
+        previousTimestamp = timestamp;
+        previousValue = bits;
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        count++;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long minTimestamp() {
+        return minTimestamp;
+    }
+
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private void writeFirstDelta(long delta) {
+        if (delta >= 0 && delta < FIRST_DELTA_ESCAPE) {
+            out.write(delta, FIRST_DELTA_BITS);
+        } else {
+            out.write(FIRST_DELTA_ESCAPE, FIRST_DELTA_BITS);
+            out.write(delta, 64);
+        }
+    }
+
+    private void writeDeltaOfDelta(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            out.write(0b0, 1);
+        } else if (fits(deltaOfDelta, 7)) {
+            out.write(0b10, 2);
+            out.write(deltaOfDelta, 7);
+        } else if (fits(deltaOfDelta, 9)) {
+            out.write(0b110, 3);
+            out.write(deltaOfDelta, 9);
+        } else if (fits(deltaOfDelta, 12)) {
+            out.write(0b1110, 4);
+            out.write(deltaOfDelta, 12);
+        } else {
+            out.write(0b1111, 4);
+            out.write(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeValue(long xor) {
+        if (xor == 0) {
+            out.write(0b0, 1);
+            return;
+        }
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+            out.write(0b10, 2);
+            out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+        } else {
+            int significant = 64 - leading - trailing;
+            out.write(0b11, 2);
+            out.write(leading, 5);
+            out.write(significant - 1, 6);
+            out.write(xor >>> trailing, significant);
+            previousLeading = leading;
+            previousTrailing = trailing;
+        }
+    }
+
+    private static boolean fits(long value, int bits) {
+        return value >= -(1L << (bits - 1)) && value < (1L << (bits - 1));
+    }
+}
@@ -0,0 +1,40 @@
+package a2.monitoring_service.repository;
+
+import a2.monitoring_service.model.ConsumptionAlert;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface ConsumptionAlertRepository extends JpaRepository<ConsumptionAlert, Long> {
+
+    /**
+     * Raises the alert level of (deviceId, hour) if {@code level} is higher than the stored one.
+     * Returns the new level, or null when another replica already notified at this level.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO consumption_alerts (device_id, hour_timestamp, level, notified_at)
+            VALUES (:deviceId, :hourTimestamp, :level, now())
+            ON CONFLICT (device_id, hour_timestamp)
+            DO UPDATE SET level = EXCLUDED.level, notified_at = EXCLUDED.notified_at
+            WHERE consumption_alerts.level < EXCLUDED.level
+            RETURNING level
+            """, nativeQuery = true)
+    Integer raiseLevel(
+            @Param("deviceId") UUID deviceId,
+            @Param("hourTimestamp") LocalDateTime hourTimestamp,
+            @Param("level") int level
+    );
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ConsumptionAlert a WHERE a.hourTimestamp < :before")
+    int deleteByHourTimestampBefore(@Param("before") LocalDateTime before);
+}
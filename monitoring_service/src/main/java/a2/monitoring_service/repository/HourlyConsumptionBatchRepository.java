@@ -0,0 +1,13 @@
+package a2.monitoring_service.repository;
+
+import a2.monitoring_service.model.DeviceHour;
+
+import java.util.Map;
+
+public interface HourlyConsumptionBatchRepository {
+
+    /**
+     * Upserts all deltas with a single JDBC batch inside the caller's transaction.
+     */
+    void addConsumptionBatch(Map<DeviceHour, Double> deltas);
+}
@@ -0,0 +1,50 @@
+package a2.monitoring_service.repository;
+
+import a2.monitoring_service.model.DeviceHour;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+public class HourlyConsumptionBatchRepositoryImpl implements HourlyConsumptionBatchRepository {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO hourly_consumption (device_id, hour_timestamp, total_consumption)
+            VALUES (?, ?, ?)
+            ON CONFLICT (device_id, hour_timestamp)
+            DO UPDATE SET total_consumption = hourly_consumption.total_consumption + EXCLUDED.total_consumption
+            """;
+
+    // Fixed row order so that concurrent batches lock rows in the same order.
+    private static final Comparator<DeviceHour> ROW_ORDER = Comparator
+            .comparing(DeviceHour::deviceId)
+            .thenComparing(DeviceHour::hourStart);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public HourlyConsumptionBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void addConsumptionBatch(Map<DeviceHour, Double> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = deltas.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(ROW_ORDER))
+                .map(e -> new Object[]{
+                        e.getKey().deviceId(),
+                        Timestamp.valueOf(e.getKey().hourStart()),
+                        e.getValue()
+                })
+                .toList();
+
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+    }
+}
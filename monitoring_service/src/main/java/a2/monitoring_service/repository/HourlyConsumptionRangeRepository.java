@@ -0,0 +1,23 @@
+package a2.monitoring_service.repository;
+
+import a2.monitoring_service.model.Resolution;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+public interface HourlyConsumptionRangeRepository {
+
+    /**
+     * Sums the device's consumption in {@code [from, to)} per bucket of {@code resolution} with a
+     * single query and hands each non-empty bucket, in order, to {@code action}. Whole days and
+     * months before {@code rolledUpTo} are read from the daily and monthly rollups, the rest from
+     * hourly rows. Rows are fetched with a cursor, so large ranges are not materialized in memory.
+     */
+    void forEachBucket(UUID deviceId,
+                       LocalDateTime from,
+                       LocalDateTime to,
+                       Resolution resolution,
+                       LocalDateTime rolledUpTo,
+                       BiConsumer<LocalDateTime, Double> action);
+}
@@ -0,0 +1,111 @@
+package a2.monitoring_service.repository;
+
+import a2.monitoring_service.model.Resolution;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+public class HourlyConsumptionRangeRepositoryImpl implements HourlyConsumptionRangeRepository {
+
+    // Hourly edges, then daily, then the monthly interior; each range may be empty
+    private static final String RANGE_SQL = """
+            SELECT date_trunc(?, bucket_ts) AS bucket_start, SUM(total) AS total
+            FROM (
+                SELECT hour_timestamp AS bucket_ts, total_consumption AS total
+                FROM hourly_consumption
+                WHERE device_id = ? AND hour_timestamp >= ? AND hour_timestamp < ?
+                UNION ALL
+                SELECT hour_timestamp, total_consumption
+                FROM hourly_consumption
+                WHERE device_id = ? AND hour_timestamp >= ? AND hour_timestamp < ?
+                UNION ALL
+                SELECT day::timestamp, total_consumption
+                FROM daily_consumption
+                WHERE device_id = ? AND day >= ? AND day < ?
+                UNION ALL
+                SELECT day::timestamp, total_consumption
+                FROM daily_consumption
+                WHERE device_id = ? AND day >= ? AND day < ?
+                UNION ALL
+                SELECT month::timestamp, total_consumption
+                FROM monthly_consumption
+                WHERE device_id = ? AND month >= ? AND month < ?
+            ) tiers
+            GROUP BY bucket_start
+            ORDER BY bucket_start
+            """;
+
+    private static final int FETCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public HourlyConsumptionRangeRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    // The PostgreSQL driver only uses a cursor for the fetch size outside auto-commit
+    @Transactional(readOnly = true)
+    public void forEachBucket(UUID deviceId,
+                              LocalDateTime from,
+                              LocalDateTime to,
+                              Resolution resolution,
+                              LocalDateTime rolledUpTo,
+                              BiConsumer<LocalDateTime, Double> action) {
+        // Coarsest tier that fits the resolution: none for hours, days for days and weeks
+        // (which start on a day), months for months. Tiers only cover whole closed periods.
+        LocalDateTime limit = to.isBefore(rolledUpTo) ? to : rolledUpTo;
+        boolean useDays = resolution != Resolution.HOUR
+                && ceil(from, Resolution.DAY).isBefore(Resolution.DAY.bucketStart(limit));
+        LocalDateTime dayStart = useDays ? ceil(from, Resolution.DAY) : to;
+        LocalDateTime dayEnd = useDays ? Resolution.DAY.bucketStart(limit) : to;
+        boolean useMonths = resolution == Resolution.MONTH
+                && ceil(dayStart, Resolution.MONTH).isBefore(Resolution.MONTH.bucketStart(dayEnd));
+        LocalDateTime monthStart = useMonths ? ceil(dayStart, Resolution.MONTH) : dayEnd;
+        LocalDateTime monthEnd = useMonths ? Resolution.MONTH.bucketStart(dayEnd) : dayEnd;
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(RANGE_SQL);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setString(1, resolution.sqlUnit());
+            int index = 2;
+            index = bindTimestamps(statement, index, deviceId, from, dayStart);
+            index = bindTimestamps(statement, index, deviceId, dayEnd, to);
+            index = bindDates(statement, index, deviceId, dayStart, monthStart);
+            index = bindDates(statement, index, deviceId, monthEnd, dayEnd);
+            bindDates(statement, index, deviceId, monthStart, monthEnd);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> action.accept(
+                resultSet.getTimestamp("bucket_start").toLocalDateTime(),
+                resultSet.getDouble("total")));
+    }
+
+    private static LocalDateTime ceil(LocalDateTime time, Resolution resolution) {
+        LocalDateTime start = resolution.bucketStart(time);
+        return start.equals(time) ? start : resolution.next(start);
+    }
+
+    private static int bindTimestamps(PreparedStatement statement, int index, UUID deviceId,
+                                      LocalDateTime from, LocalDateTime to) throws SQLException {
+        statement.setObject(index, deviceId);
+        statement.setTimestamp(index + 1, Timestamp.valueOf(from));
+        statement.setTimestamp(index + 2, Timestamp.valueOf(to));
+        return index + 3;
+    }
+
+    private static int bindDates(PreparedStatement statement, int index, UUID deviceId,
+                                 LocalDateTime from, LocalDateTime to) throws SQLException {
+        statement.setObject(index, deviceId);
+        statement.setDate(index + 1, Date.valueOf(from.toLocalDate()));
+        statement.setDate(index + 2, Date.valueOf(to.toLocalDate()));
+        return index + 3;
+    }
+}
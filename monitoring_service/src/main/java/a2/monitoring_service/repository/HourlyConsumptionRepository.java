@@ -1,32 +1,66 @@
 package a2.monitoring_service.repository;
 
 import a2.monitoring_service.model.HourlyConsumption;
+import a2.monitoring_service.model.HourlyTotal;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface HourlyConsumptionRepository extends JpaRepository<HourlyConsumption, Long> {
+public interface HourlyConsumptionRepository extends JpaRepository<HourlyConsumption, Long>,
+        HourlyConsumptionBatchRepository, HourlyConsumptionRangeRepository {
 
-    Optional<HourlyConsumption> findByDeviceIdAndHourTimestamp(
-            UUID deviceId,
-            LocalDateTime hourTimestamp
+    /**
+     * Atomically adds {@code delta} to the (deviceId, hour) row, creating it if needed,
+     * and returns the new total. Safe to call concurrently from several replicas.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO hourly_consumption (device_id, hour_timestamp, total_consumption)
+            VALUES (:deviceId, :hourTimestamp, :delta)
+            ON CONFLICT (device_id, hour_timestamp)
+            DO UPDATE SET total_consumption = hourly_consumption.total_consumption + EXCLUDED.total_consumption
+            RETURNING total_consumption
+            """, nativeQuery = true)
+    Double addConsumption(
+            @Param("deviceId") UUID deviceId,
+            @Param("hourTimestamp") LocalDateTime hourTimestamp,
+            @Param("delta") double delta
     );
 
-    List<HourlyConsumption> findByDeviceIdAndHourTimestampBetween(
-            UUID deviceId,
-            LocalDateTime start,
-            LocalDateTime end
+    /**
+     * Total of one (deviceId, hour) row, read without loading the entity.
+     */
+    @Query("""
+            SELECT h.totalConsumption FROM HourlyConsumption h
+            WHERE h.deviceId = :deviceId AND h.hourTimestamp = :hourTimestamp
+            """)
+    Optional<Double> findTotal(
+            @Param("deviceId") UUID deviceId,
+            @Param("hourTimestamp") LocalDateTime hourTimestamp
     );
 
-    List<HourlyConsumption> findByDeviceIdAndHourTimestampBetweenOrderByHourTimestamp(
-            UUID deviceId,
-            Instant start,
-            Instant end
+    /**
+     * Hourly totals of a device in {@code [start, end)}, in hour order. Served by the
+     * (device_id, hour_timestamp) unique index; the range on the partition key limits the scan
+     * to the monthly partitions it overlaps.
+     */
+    @Query("""
+            SELECT new a2.monitoring_service.model.HourlyTotal(h.hourTimestamp, h.totalConsumption)
+            FROM HourlyConsumption h
+            WHERE h.deviceId = :deviceId AND h.hourTimestamp >= :start AND h.hourTimestamp < :end
+            ORDER BY h.hourTimestamp
+            """)
+    List<HourlyTotal> findHourlyTotals(
+            @Param("deviceId") UUID deviceId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
     );
-}
\ No newline at end of file
+}
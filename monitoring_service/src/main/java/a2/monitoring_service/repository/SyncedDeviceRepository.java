@@ -4,7 +4,14 @@ import a2.monitoring_service.model.SyncedDevice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface SyncedDeviceRepository extends JpaRepository<SyncedDevice, UUID> {}
+public interface SyncedDeviceRepository extends JpaRepository<SyncedDevice, UUID> {
+
+    List<SyncedDevice> findByDeletedFalse();
+
+    List<SyncedDevice> findByLastSyncTimeAfter(Instant since);
+}
@@ -0,0 +1,100 @@
+package a2.monitoring_service.service;
+
+import a2.monitoring_service.model.DeviceHour;
+import a2.monitoring_service.repository.ConsumptionAlertRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-device, per-hour overconsumption alert state. Level 1 means the hourly limit was
+ * crossed, each further level one of the configured escalation multiples of the limit.
+ * A level is notified at most once per hour across all replicas; state resets with the hour.
+ */
+@Service
+public class ConsumptionAlertService {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumptionAlertService.class);
+
+    private final ConsumptionAlertRepository repository;
+    private final Map<DeviceHour, Integer> notifiedLevels = new ConcurrentHashMap<>();
+
+    @Value("${monitoring.alerts.escalation-multiples:}")
+    private double[] escalationMultiples;
+
+    @Value("${monitoring.alerts.retention-hours:48}")
+    private long retentionHours;
+
+    public ConsumptionAlertService(ConsumptionAlertRepository repository) {
+        this.repository = repository;
+    }
+
+    @PostConstruct
+    public void init() {
+        escalationMultiples = Arrays.stream(escalationMultiples)
+                .filter(m -> m > 1.0)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * Returns the alert level that should be notified for this hourly total, or 0 if the
+     * total is within the limit or the level was already notified.
+     */
+    public int levelToNotify(DeviceHour key, double total, double limit) {
+        int level = levelFor(total, limit);
+        if (level == 0) {
+            return 0;
+        }
+
+        Integer known = notifiedLevels.get(key);
+        if (known != null && known >= level) {
+            return 0;
+        }
+
+        Integer raised = repository.raiseLevel(key.deviceId(), key.hourStart(), level);
+        notifiedLevels.merge(key, level, Math::max);
+        return raised != null ? raised : 0;
+    }
+
+    /**
+     * Multiple of the limit that a level stands for (1.0 for the first alert).
+     */
+    public double multipleOf(int level) {
+        return level <= 1 ? 1.0 : escalationMultiples[level - 2];
+    }
+
+    @Scheduled(cron = "${monitoring.alerts.cleanup-cron:0 5 * * * *}")
+    public void cleanup() {
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        notifiedLevels.keySet().removeIf(key -> key.hourStart().isBefore(currentHour));
+
+        int deleted = repository.deleteByHourTimestampBefore(currentHour.minusHours(retentionHours));
+        if (deleted > 0) {
+            log.debug("Removed {} expired alert states", deleted);
+        }
+    }
+
+    private int levelFor(double total, double limit) {
+        if (total <= limit) {
+            return 0;
+        }
+        int level = 1;
+        for (double multiple : escalationMultiples) {
+            if (total > limit * multiple) {
+                level++;
+            }
+        }
+        return level;
+    }
+}
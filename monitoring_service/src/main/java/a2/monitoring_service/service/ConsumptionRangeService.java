@@ -0,0 +1,51 @@
+package a2.monitoring_service.service;
+
+import a2.monitoring_service.dto.ConsumptionBucketDto;
+import a2.monitoring_service.model.Resolution;
+import a2.monitoring_service.repository.HourlyConsumptionRepository;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Consumption over an interval at hour, day, week or month resolution, read with one grouped
+ * query from the coarsest rollup tier that fits. Buckets without readings are reported as zero
+ * so charts get a contiguous series.
+ */
+@Service
+public class ConsumptionRangeService {
+
+    private final HourlyConsumptionRepository repository;
+    private final ConsumptionRollupService rollupService;
+
+    public ConsumptionRangeService(HourlyConsumptionRepository repository, ConsumptionRollupService rollupService) {
+        this.repository = repository;
+        this.rollupService = rollupService;
+    }
+
+    /**
+     * Emits every bucket overlapping {@code [from, to)} in order, i.e.
+     * {@link Resolution#bucketCount} of them.
+     */
+    public void forEachBucket(UUID deviceId,
+                              LocalDateTime from,
+                              LocalDateTime to,
+                              Resolution resolution,
+                              Consumer<ConsumptionBucketDto> action) {
+        LocalDateTime[] next = {resolution.bucketStart(from)};
+
+        repository.forEachBucket(deviceId, from, to, resolution, rollupService.rolledUpTo(), (bucketStart, total) -> {
+            for (; next[0].isBefore(bucketStart); next[0] = resolution.next(next[0])) {
+                action.accept(new ConsumptionBucketDto(next[0], 0.0));
+            }
+            action.accept(new ConsumptionBucketDto(bucketStart, total));
+            next[0] = resolution.next(bucketStart);
+        });
+
+        for (; next[0].isBefore(to); next[0] = resolution.next(next[0])) {
+            action.accept(new ConsumptionBucketDto(next[0], 0.0));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package a2.monitoring_service.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Keeps {@code daily_consumption} and {@code monthly_consumption} up to date as hourly buckets
+ * close. An hour counts as closed once {@code close-grace} has passed after its end, which leaves
+ * time for the write-behind buffer to flush it.
+ *
+ * <p>Each run recomputes the days and months touched since the watermark instead of adding
+ * deltas, so a day picks up late writes to any of its hours until its last hour is rolled up.
+ * Writes that land behind the watermark after that are recorded in {@code rollup_dirty_days} by a
+ * trigger on {@code hourly_consumption}, and the next run recomputes those days and their months.
+ */
+@Service
+public class ConsumptionRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumptionRollupService.class);
+    private static final long LOCK_KEY = 0x726F6C6CL;
+
+    private static final String ROLLUP_DAYS_SQL = """
+            INSERT INTO daily_consumption (device_id, day, total_consumption)
+            SELECT device_id, hour_timestamp::date, sum(total_consumption)
+            FROM hourly_consumption
+            WHERE hour_timestamp >= ? AND hour_timestamp < ?
+            GROUP BY device_id, hour_timestamp::date
+            ON CONFLICT (device_id, day)
+            DO UPDATE SET total_consumption = EXCLUDED.total_consumption
+            """;
+
+    private static final String ROLLUP_MONTHS_SQL = """
+            INSERT INTO monthly_consumption (device_id, month, total_consumption)
+            SELECT device_id, date_trunc('month', day)::date, sum(total_consumption)
+            FROM daily_consumption
+            WHERE day >= ?
+            GROUP BY device_id, date_trunc('month', day)::date
+            ON CONFLICT (device_id, month)
+            DO UPDATE SET total_consumption = EXCLUDED.total_consumption
+            """;
+
+    private static final String ROLLUP_DIRTY_DAYS_SQL = """
+            INSERT INTO daily_consumption (device_id, day, total_consumption)
+            SELECT h.device_id, h.hour_timestamp::date, sum(h.total_consumption)
+            FROM rollup_dirty_days d
+            JOIN hourly_consumption h
+              ON h.device_id = d.device_id
+             AND h.hour_timestamp >= d.day
+             AND h.hour_timestamp < d.day + interval '1 day'
+            WHERE h.hour_timestamp < ?
+            GROUP BY h.device_id, h.hour_timestamp::date
+            ON CONFLICT (device_id, day)
+            DO UPDATE SET total_consumption = EXCLUDED.total_consumption
+            """;
+
+    private static final String ROLLUP_DIRTY_MONTHS_SQL = """
+            INSERT INTO monthly_consumption (device_id, month, total_consumption)
+            SELECT device_id, date_trunc('month', day)::date, sum(total_consumption)
+            FROM daily_consumption
+            WHERE (device_id, date_trunc('month', day)::date) IN (
+                SELECT device_id, date_trunc('month', day)::date FROM rollup_dirty_days)
+            GROUP BY device_id, date_trunc('month', day)::date
+            ON CONFLICT (device_id, month)
+            DO UPDATE SET total_consumption = EXCLUDED.total_consumption
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${monitoring.rollup.close-grace-minutes:10}")
+    private long closeGraceMinutes;
+
+    public ConsumptionRollupService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * End of the rolled-up period: both rollup tiers contain every hour before it.
+     */
+    public LocalDateTime rolledUpTo() {
+        return jdbcTemplate.queryForObject("SELECT rolled_up_to FROM rollup_watermark WHERE id = 1",
+                Timestamp.class).toLocalDateTime();
+    }
+
+    @Scheduled(cron = "${monitoring.rollup.cron:0 */5 * * * *}")
+    public void rollUp() {
+        LocalDateTime closedUpTo = LocalDateTime.now().minusMinutes(closeGraceMinutes).truncatedTo(ChronoUnit.HOURS);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, LOCK_KEY);
+
+                // Holding the row makes late writes wait and then see the new watermark, see V5
+                LocalDateTime watermark = jdbcTemplate.queryForObject(
+                        "SELECT rolled_up_to FROM rollup_watermark WHERE id = 1 FOR UPDATE",
+                        Timestamp.class).toLocalDateTime();
+                rollUpDirtyDays(watermark);
+                if (!watermark.isBefore(closedUpTo)) {
+                    return;
+                }
+                LocalDateTime firstDay = watermark.truncatedTo(ChronoUnit.DAYS);
+                LocalDateTime firstMonth = firstDay.withDayOfMonth(1);
+
+                int days = jdbcTemplate.update(ROLLUP_DAYS_SQL, Timestamp.valueOf(firstDay), Timestamp.valueOf(closedUpTo));
+                int months = jdbcTemplate.update(ROLLUP_MONTHS_SQL, Date.valueOf(firstMonth.toLocalDate()));
+                jdbcTemplate.update("UPDATE rollup_watermark SET rolled_up_to = ? WHERE id = 1",
+                        Timestamp.valueOf(closedUpTo));
+                log.debug("Rolled up hours until {}: {} daily and {} monthly rows", closedUpTo, days, months);
+            });
+        } catch (Exception e) {
+            log.error("Consumption rollup failed, will retry: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recomputes the days that were written to behind the watermark, and their months, up to the
+     * watermark. Runs under the watermark row lock, so no day can be marked while it clears them.
+     */
+    private void rollUpDirtyDays(LocalDateTime watermark) {
+        int days = jdbcTemplate.update(ROLLUP_DIRTY_DAYS_SQL, Timestamp.valueOf(watermark));
+        if (days > 0) {
+            int months = jdbcTemplate.update(ROLLUP_DIRTY_MONTHS_SQL);
+            log.debug("Recomputed {} daily and {} monthly rows after late writes", days, months);
+        }
+        // Also drops days whose hours were since removed with their partition
+        jdbcTemplate.update("DELETE FROM rollup_dirty_days");
+    }
+}
@@ -0,0 +1,115 @@
+package a2.monitoring_service.service;
+
+import a2.monitoring_service.model.SyncedDevice;
+import a2.monitoring_service.repository.SyncedDeviceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the synced devices used on the measurement hot path.
+ * It is filled at startup, updated by {@link DeviceSyncConsumer} and periodically
+ * refreshed from the database to pick up sync events handled by other replicas.
+ * A device missing from the cache is looked up once; devices that are not there either are
+ * remembered until a sync or refresh brings them in.
+ */
+@Component
+public class DeviceCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceCache.class);
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+    private static final int MAX_UNKNOWN_DEVICES = 10_000;
+
+    private final SyncedDeviceRepository repository;
+    private final Map<UUID, SyncedDevice> devices = new ConcurrentHashMap<>();
+    private final Set<UUID> unknownDevices = ConcurrentHashMap.newKeySet();
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile Instant lastRefresh = Instant.EPOCH;
+
+    public DeviceCache(SyncedDeviceRepository repository, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.hits = Counter.builder("monitoring.device.cache.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("monitoring.device.cache.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("monitoring.device.cache.size", devices, Map::size)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        Instant started = Instant.now();
+        repository.findByDeletedFalse().forEach(this::put);
+        lastRefresh = started;
+        log.info("Device cache warmed up with {} devices", devices.size());
+    }
+
+    public Optional<SyncedDevice> get(UUID deviceId) {
+        SyncedDevice device = devices.get(deviceId);
+        if (device != null) {
+            hits.increment();
+            return Optional.of(device);
+        }
+        misses.increment();
+        if (unknownDevices.contains(deviceId)) {
+            return Optional.empty();
+        }
+        return load(deviceId);
+    }
+
+    public void put(SyncedDevice device) {
+        if (device.isDeleted()) {
+            devices.remove(device.getId());
+        } else {
+            devices.put(device.getId(), device);
+            unknownDevices.remove(device.getId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${monitoring.device-cache.refresh-interval-ms:30000}")
+    public void refresh() {
+        Instant started = Instant.now();
+        List<SyncedDevice> changed = repository.findByLastSyncTimeAfter(lastRefresh.minus(REFRESH_OVERLAP));
+        changed.forEach(this::put);
+        lastRefresh = started;
+
+        if (!changed.isEmpty()) {
+            log.debug("Device cache refreshed {} devices", changed.size());
+        }
+    }
+
+    /**
+     * Covers a device synced since the last refresh by a replica other than this one.
+     */
+    private Optional<SyncedDevice> load(UUID deviceId) {
+        Optional<SyncedDevice> device = repository.findById(deviceId).filter(d -> !d.isDeleted());
+        if (device.isPresent()) {
+            put(device.get());
+        } else {
+            // Ids that never exist must not grow the set without bound
+            if (unknownDevices.size() >= MAX_UNKNOWN_DEVICES) {
+                unknownDevices.clear();
+            }
+            unknownDevices.add(deviceId);
+        }
+        return device;
+    }
+}
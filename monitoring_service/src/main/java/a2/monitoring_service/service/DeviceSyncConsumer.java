@@ -16,9 +16,11 @@ public class DeviceSyncConsumer {
     private static final Logger log = LoggerFactory.getLogger(DeviceSyncConsumer.class);
 
     private final SyncedDeviceRepository repo;
+    private final DeviceCache deviceCache;
 
-    public DeviceSyncConsumer(SyncedDeviceRepository repo) {
+    public DeviceSyncConsumer(SyncedDeviceRepository repo, DeviceCache deviceCache) {
         this.repo = repo;
+        this.deviceCache = deviceCache;
     }
 
     @RabbitListener(queues = "${sync.queue.name}")
@@ -49,6 +51,7 @@ public class DeviceSyncConsumer {
         d.setLastSyncTime(Instant.now());
 
         repo.save(d);
+        deviceCache.put(d);
 
         log.info("Device synced: id={}, name={}, userId={}, maxConsumption={}",
                 d.getId(), d.getName(), d.getUserId(), d.getMaxConsumption());
@@ -60,6 +63,7 @@ public class DeviceSyncConsumer {
             d.setDeleted(true);
             d.setLastSyncTime(Instant.now());
             repo.save(d);
+            deviceCache.put(d);
         });
 
         log.info("Device marked as deleted: {}", event.getEntityId());
@@ -0,0 +1,314 @@
+package a2.monitoring_service.service;
+
+import a2.monitoring_service.model.DeviceHour;
+import a2.monitoring_service.repository.HourlyConsumptionRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind aggregation of measurements into hourly buckets keyed by (deviceId, hour).
+ * Readings are added in memory and the pending deltas of dirty buckets are upserted in one
+ * transaction, either periodically, when too many buckets are dirty, or on shutdown.
+ *
+ * <p>Readings fed from the measurement log carry their log sequence. A flush snapshots the
+ * buckets under the write side of {@code sequenceLock}, so every reading up to the sequence seen
+ * at the snapshot is in that flush or an earlier one. The flush saves that sequence in
+ * {@code ingest_cursor} in its own transaction, and {@link #durableSequence()} reports it once the
+ * flush has committed.
+ *
+ * <p>A bucket's persisted total is loaded before it enters the map, never inside a map operation
+ * or while {@code sequenceLock} is held, so a slow query only delays the reading that needs it.
+ * Eviction marks the bucket it removes, and an add that finds its bucket evicted starts over.
+ */
+@Component
+public class HourlyConsumptionBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(HourlyConsumptionBuffer.class);
+
+    private static final String SAVE_CURSOR_SQL = """
+            INSERT INTO ingest_cursor (replica, hourly_sequence)
+            VALUES (?, ?)
+            ON CONFLICT (replica)
+            DO UPDATE SET hourly_sequence = EXCLUDED.hourly_sequence
+            """;
+
+    private final HourlyConsumptionRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<DeviceHour, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger dirtyCount = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantReadWriteLock sequenceLock = new ReentrantReadWriteLock();
+    private volatile long appliedSequence;
+    private volatile long durableSequence;
+
+    @Value("${monitoring.buffer.max-dirty-buckets:500}")
+    private int maxDirtyBuckets;
+
+    @Value("${monitoring.queue.name:monitoring_q_1}")
+    private String replica;
+
+    public HourlyConsumptionBuffer(HourlyConsumptionRepository repository,
+                                   JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Adds a reading to its hourly bucket and returns the bucket's running total.
+     */
+    public double add(UUID deviceId, LocalDateTime hourStart, Double value) {
+        return add(deviceId, hourStart, value, 0);
+    }
+
+    /**
+     * Adds a reading taken from the measurement log; {@code sequence} is its log sequence.
+     */
+    public double add(UUID deviceId, LocalDateTime hourStart, Double value, long sequence) {
+        double delta = value != null ? value : 0.0;
+        DeviceHour key = new DeviceHour(deviceId, hourStart);
+        Double total = null;
+
+        while (total == null) {
+            Bucket bucket = bucketFor(key);
+            sequenceLock.readLock().lock();
+            try {
+                total = addPending(bucket, delta);
+                if (total != null && sequence > appliedSequence) {
+                    appliedSequence = sequence;
+                }
+            } finally {
+                sequenceLock.readLock().unlock();
+            }
+        }
+
+        if (dirtyCount.get() >= maxDirtyBuckets && flushLock.tryLock()) {
+            try {
+                flushDirtyBuckets();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Tracks a delta that the caller has already committed to the database and returns the
+     * bucket's running total. A bucket loaded here already contains the committed delta.
+     */
+    public double addPersisted(DeviceHour key, double delta) {
+        while (true) {
+            Bucket bucket = buckets.get(key);
+            boolean loaded = false;
+            if (bucket == null) {
+                Bucket fresh = load(key);
+                bucket = buckets.putIfAbsent(key, fresh);
+                if (bucket == null) {
+                    bucket = fresh;
+                    loaded = true;
+                }
+            }
+            synchronized (bucket) {
+                if (bucket.evicted) {
+                    continue;
+                }
+                if (!loaded) {
+                    bucket.total += delta;
+                }
+                return bucket.total;
+            }
+        }
+    }
+
+    /**
+     * Highest log sequence whose reading, and every reading before it, is committed.
+     */
+    public long durableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Reads this replica's durable sequence back from {@code ingest_cursor}, before the
+     * measurement log replays.
+     */
+    public long loadDurableSequence() {
+        long sequence = jdbcTemplate.queryForList(
+                        "SELECT hourly_sequence FROM ingest_cursor WHERE replica = ?", Long.class, replica)
+                .stream()
+                .findFirst()
+                .orElse(0L);
+        appliedSequence = sequence;
+        durableSequence = sequence;
+        return sequence;
+    }
+
+    @Scheduled(fixedDelayString = "${monitoring.buffer.flush-interval-ms:5000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushDirtyBuckets();
+            evictClosedBuckets();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing {} dirty hourly buckets before shutdown", dirtyCount.get());
+        flush();
+    }
+
+    private void flushDirtyBuckets() {
+        List<Bucket> flushed = new ArrayList<>();
+        List<Double> deltas = new ArrayList<>();
+        long snapshotSequence;
+
+        sequenceLock.writeLock().lock();
+        try {
+            snapshotSequence = appliedSequence;
+            for (Bucket bucket : buckets.values()) {
+                synchronized (bucket) {
+                    if (!bucket.dirty) {
+                        continue;
+                    }
+                    bucket.dirty = false;
+                    dirtyCount.decrementAndGet();
+                    flushed.add(bucket);
+                    deltas.add(bucket.pending);
+                    bucket.pending = 0.0;
+                }
+            }
+        } finally {
+            sequenceLock.writeLock().unlock();
+        }
+
+        if (flushed.isEmpty()) {
+            durableSequence = snapshotSequence;
+            return;
+        }
+
+        try {
+            List<Double> totals = transactionTemplate.execute(status -> {
+                List<Double> result = new ArrayList<>(flushed.size());
+                for (int i = 0; i < flushed.size(); i++) {
+                    DeviceHour key = flushed.get(i).key;
+                    result.add(repository.addConsumption(key.deviceId(), key.hourStart(), deltas.get(i)));
+                }
+                if (snapshotSequence > 0) {
+                    jdbcTemplate.update(SAVE_CURSOR_SQL, replica, snapshotSequence);
+                }
+                return result;
+            });
+
+            for (int i = 0; i < flushed.size(); i++) {
+                Bucket bucket = flushed.get(i);
+                synchronized (bucket) {
+                    bucket.total = totals.get(i) + bucket.pending;
+                }
+            }
+            durableSequence = snapshotSequence;
+            log.debug("Flushed {} hourly buckets", flushed.size());
+        } catch (Exception e) {
+            log.error("Failed to flush {} hourly buckets, will retry: {}", flushed.size(), e.getMessage(), e);
+            for (int i = 0; i < flushed.size(); i++) {
+                Bucket bucket = flushed.get(i);
+                synchronized (bucket) {
+                    bucket.pending += deltas.get(i);
+                    if (!bucket.dirty) {
+                        bucket.dirty = true;
+                        dirtyCount.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    private void evictClosedBuckets() {
+        LocalDateTime cutoff = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(1);
+
+        for (DeviceHour key : buckets.keySet()) {
+            if (!key.hourStart().isBefore(cutoff)) {
+                continue;
+            }
+            buckets.computeIfPresent(key, (k, bucket) -> {
+                synchronized (bucket) {
+                    if (bucket.dirty) {
+                        return bucket;
+                    }
+                    bucket.evicted = true;
+                    return null;
+                }
+            });
+        }
+    }
+
+    private Bucket bucketFor(DeviceHour key) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        Bucket loaded = load(key);
+        Bucket raced = buckets.putIfAbsent(key, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    /**
+     * Adds the delta to the bucket and returns its running total, or {@code null} if the bucket
+     * was evicted meanwhile and the caller has to look it up again.
+     */
+    private Double addPending(Bucket bucket, double delta) {
+        synchronized (bucket) {
+            if (bucket.evicted) {
+                return null;
+            }
+            if (!bucket.dirty) {
+                bucket.dirty = true;
+                dirtyCount.incrementAndGet();
+            }
+            bucket.total += delta;
+            bucket.pending += delta;
+            return bucket.total;
+        }
+    }
+
+    private Bucket load(DeviceHour key) {
+        double persisted = repository
+                .findTotal(key.deviceId(), key.hourStart())
+                .orElse(0.0);
+        return new Bucket(key, persisted);
+    }
+
+    private static final class Bucket {
+        private final DeviceHour key;
+        private double total;
+        private double pending;
+        private boolean dirty;
+        private boolean evicted;
+
+        private Bucket(DeviceHour key, double total) {
+            this.key = key;
+            this.total = total;
+        }
+    }
+}
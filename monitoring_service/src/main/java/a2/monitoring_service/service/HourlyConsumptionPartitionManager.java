@@ -0,0 +1,153 @@
+package a2.monitoring_service.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the monthly partitions of {@code hourly_consumption}: creates the coming months ahead
+ * of time and detaches and drops months older than the retention. Runs at startup and daily; an
+ * advisory lock keeps replicas from doing it concurrently.
+ *
+ * <p>Dropping a month compacts its hourly rows away; reports over it keep working from the daily
+ * and monthly rollups. Months that are not fully rolled up yet are never dropped.
+ */
+@Component
+public class HourlyConsumptionPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(HourlyConsumptionPartitionManager.class);
+
+    private static final String PARENT = "hourly_consumption";
+    private static final String DEFAULT_PARTITION = "hourly_consumption_default";
+    private static final Pattern PARTITION_NAME = Pattern.compile("hourly_consumption_p(\\d{4})_(\\d{2})");
+    private static final long LOCK_KEY = 0x68726C79L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConsumptionRollupService rollupService;
+
+    @Value("${monitoring.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    // 0 keeps every month
+    @Value("${monitoring.partitions.retention-months:24}")
+    private int retentionMonths;
+
+    public HourlyConsumptionPartitionManager(JdbcTemplate jdbcTemplate,
+                                             PlatformTransactionManager transactionManager,
+                                             ConsumptionRollupService rollupService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rollupService = rollupService;
+    }
+
+    @PostConstruct
+    public void init() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${monitoring.partitions.maintenance-cron:0 15 3 * * *}")
+    public void maintain() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, LOCK_KEY);
+
+                YearMonth current = YearMonth.now();
+                List<YearMonth> existing = existingPartitions();
+                for (YearMonth month = current; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+                    if (!existing.contains(month)) {
+                        createPartition(month);
+                    }
+                }
+                if (retentionMonths > 0) {
+                    YearMonth rolledUp = YearMonth.from(rollupService.rolledUpTo());
+                    YearMonth oldestKept = current.minusMonths(retentionMonths);
+                    dropExpired(existing, oldestKept.isBefore(rolledUp) ? oldestKept : rolledUp);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Partition maintenance of {} failed: {}", PARENT, e.getMessage(), e);
+        }
+    }
+
+    private List<YearMonth> existingPartitions() {
+        return jdbcTemplate.queryForList("""
+                        SELECT c.relname
+                        FROM pg_inherits i
+                        JOIN pg_class c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = ?::regclass
+                        """, String.class, PARENT).stream()
+                .map(HourlyConsumptionPartitionManager::monthOf)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Creates the month's partition. Rows of that month already in the default partition would
+     * make the CREATE fail, so they are moved over while the default partition is detached.
+     */
+    private void createPartition(YearMonth month) {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        String create = "CREATE TABLE " + partitionName(month) + " PARTITION OF " + PARENT
+                + " FOR VALUES FROM ('" + Timestamp.valueOf(from) + "') TO ('" + Timestamp.valueOf(to) + "')";
+
+        Boolean stray = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE hour_timestamp >= ? AND hour_timestamp < ?)",
+                Boolean.class, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        if (!Boolean.TRUE.equals(stray)) {
+            jdbcTemplate.execute(create);
+            log.info("Created partition {}", partitionName(month));
+            return;
+        }
+
+        jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + DEFAULT_PARTITION);
+        jdbcTemplate.execute(create);
+        int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                        + " WHERE hour_timestamp >= ? AND hour_timestamp < ? RETURNING *)"
+                        + " INSERT INTO " + PARENT + " SELECT * FROM moved",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        jdbcTemplate.execute("ALTER TABLE " + PARENT + " ATTACH PARTITION " + DEFAULT_PARTITION + " DEFAULT");
+        log.info("Created partition {} and moved {} rows into it from {}", partitionName(month), moved, DEFAULT_PARTITION);
+    }
+
+    private void dropExpired(List<YearMonth> existing, YearMonth oldestKept) {
+        for (YearMonth month : existing) {
+            if (month.isBefore(oldestKept)) {
+                jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + partitionName(month));
+                jdbcTemplate.execute("DROP TABLE " + partitionName(month));
+                log.info("Dropped expired partition {}", partitionName(month));
+            }
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE hour_timestamp < ?",
+                Timestamp.valueOf(oldestKept.atDay(1).atStartOfDay()));
+        if (deleted > 0) {
+            log.info("Removed {} expired rows from {}", deleted, DEFAULT_PARTITION);
+        }
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("%s_p%04d_%02d", PARENT, month.getYear(), month.getMonthValue());
+    }
+
+    private static YearMonth monthOf(String partitionName) {
+        Matcher matcher = PARTITION_NAME.matcher(partitionName);
+        return matcher.matches()
+                ? YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)))
+                : null;
+    }
+}
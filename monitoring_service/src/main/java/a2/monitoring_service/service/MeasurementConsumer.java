@@ -1,9 +1,13 @@
 package a2.monitoring_service.service;
 
 import a2.monitoring_service.messaging.MeasurementMessage;
-import a2.monitoring_service.model.HourlyConsumption;
+import a2.monitoring_service.model.DeviceHour;
+import a2.monitoring_service.rawstore.RawMeasurementStore;
 import a2.monitoring_service.repository.HourlyConsumptionRepository;
-import a2.monitoring_service.repository.SyncedDeviceRepository;
+import a2.monitoring_service.wal.LogRecord;
+import a2.monitoring_service.wal.MeasurementLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
@@ -11,18 +15,33 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.LongSupplier;
 
 @Service
 public class MeasurementConsumer {
 
     private static final Logger log = LoggerFactory.getLogger(MeasurementConsumer.class);
+    private static final String HOURLY_CURSOR = "hourly";
+    private static final String RAW_CURSOR = "raw";
+
+    private final HourlyConsumptionBuffer consumptionBuffer;
     private final HourlyConsumptionRepository hourlyConsumptionRepository;
-    private final SyncedDeviceRepository deviceRepository;
+    private final DeviceCache deviceCache;
+    private final ConsumptionAlertService alertService;
     private final RabbitTemplate rabbitTemplate;
+    private final Optional<RawMeasurementStore> rawStore;
+    private final Optional<MeasurementLog> measurementLog;
 
     @Value("${notification.queue.name}")
     private String notificationQueue;
@@ -30,55 +49,214 @@ public class MeasurementConsumer {
     @Value("${monitoring.queue.name:monitoring_q_1}")
     private String currentQueueName;
 
-    public MeasurementConsumer(HourlyConsumptionRepository hourlyConsumptionRepository,
-                               SyncedDeviceRepository deviceRepository,
-                               RabbitTemplate rabbitTemplate) {
+    private long hourlyDurableAtStart;
+
+    public MeasurementConsumer(HourlyConsumptionBuffer consumptionBuffer,
+                               HourlyConsumptionRepository hourlyConsumptionRepository,
+                               DeviceCache deviceCache,
+                               ConsumptionAlertService alertService,
+                               RabbitTemplate rabbitTemplate,
+                               Optional<RawMeasurementStore> rawStore,
+                               Optional<MeasurementLog> measurementLog) {
+        this.consumptionBuffer = consumptionBuffer;
         this.hourlyConsumptionRepository = hourlyConsumptionRepository;
-        this.deviceRepository = deviceRepository;
+        this.deviceCache = deviceCache;
+        this.alertService = alertService;
         this.rabbitTemplate = rabbitTemplate;
+        this.rawStore = rawStore;
+        this.measurementLog = measurementLog;
+    }
+
+    /**
+     * Replays what the previous run logged but did not persist, then starts applying new readings
+     * from the log. Runs before the listeners start.
+     */
+    @PostConstruct
+    public void startMeasurementLog() throws IOException {
+        if (measurementLog.isEmpty()) {
+            return;
+        }
+        // The log's own checkpoint trails ingest_cursor, but counts until the cursor has a row
+        hourlyDurableAtStart = Math.max(consumptionBuffer.loadDurableSequence(),
+                measurementLog.get().checkpoint(HOURLY_CURSOR));
+        Map<String, LongSupplier> cursors = new LinkedHashMap<>();
+        cursors.put(HOURLY_CURSOR, consumptionBuffer::durableSequence);
+        rawStore.ifPresent(store -> cursors.put(RAW_CURSOR, store::durableSequence));
+        measurementLog.get().start(this::applyLogged, cursors);
+    }
+
+    /**
+     * Persists everything applied from the log before its last checkpoint. Runs after the
+     * listeners have stopped and, as this bean depends on them, before the buffer, the raw store
+     * and the log shut down on their own.
+     */
+    @PreDestroy
+    public void stopMeasurementLog() throws IOException, InterruptedException {
+        if (measurementLog.isEmpty()) {
+            return;
+        }
+        MeasurementLog wal = measurementLog.get();
+        wal.stopApplier();
+        consumptionBuffer.flushOnShutdown();
+        rawStore.ifPresent(RawMeasurementStore::flushOnShutdown);
+        wal.close();
     }
 
-    @RabbitListener(queues = "${monitoring.queue.name:monitoring_q_1}")
-    public void handleMeasurement(MeasurementMessage message) {
+    @RabbitListener(
+            queues = "${monitoring.queue.name:monitoring_q_1}",
+            containerFactory = "measurementContainerFactory",
+            autoStartup = "#{!${monitoring.consumer.batch-enabled:false}}"
+    )
+    public void handleMeasurement(MeasurementMessage message) throws IOException, InterruptedException {
         log.info("Replica listening on [{}] received measurement from device: {}", currentQueueName, message.getDeviceId());
 
-        try {
-            LocalDateTime dateTime = LocalDateTime.ofInstant(
-                    message.getTimestamp(),
-                    ZoneId.systemDefault()
-            );
-            LocalDateTime hourStart = dateTime.truncatedTo(ChronoUnit.HOURS);
+        if (measurementLog.isPresent()) {
+            if (message.getDeviceId() == null || message.getTimestamp() == null) {
+                log.warn("Skipping invalid measurement: {}", message);
+                return;
+            }
+            // Throws if the reading cannot be logged, so the message is redelivered
+            Double value = message.getMeasurementValue();
+            measurementLog.get().append(message.getDeviceId(), message.getTimestamp(),
+                    value != null ? value : Double.NaN);
+            return;
+        }
 
-            HourlyConsumption hourly = hourlyConsumptionRepository
-                    .findByDeviceIdAndHourTimestamp(message.getDeviceId(), hourStart)
-                    .orElseGet(() -> new HourlyConsumption(message.getDeviceId(), hourStart, 0.0));
+        try {
+            LocalDateTime hourStart = hourStartOf(message);
+            storeRaw(message);
 
-            hourly.addToTotal(message.getMeasurementValue());
-            hourlyConsumptionRepository.save(hourly);
+            double hourlyTotal = consumptionBuffer.add(
+                    message.getDeviceId(),
+                    hourStart,
+                    message.getMeasurementValue()
+            );
 
-            checkAndNotifyOverconsumption(message.getDeviceId(), hourly.getTotalConsumption());
+            checkAndNotifyOverconsumption(new DeviceHour(message.getDeviceId(), hourStart), hourlyTotal);
 
         } catch (Exception e) {
             log.error("Error processing measurement: {}", e.getMessage(), e);
         }
     }
 
-    private void checkAndNotifyOverconsumption(UUID deviceId, Double currentTotalConsumption) {
-        deviceRepository.findById(deviceId).ifPresent(device -> {
+    @RabbitListener(
+            queues = "${monitoring.queue.name:monitoring_q_1}",
+            containerFactory = "measurementBatchContainerFactory",
+            autoStartup = "${monitoring.consumer.batch-enabled:false}"
+    )
+    public void handleMeasurementBatch(List<MeasurementMessage> messages) {
+        log.info("Replica listening on [{}] received batch of {} measurements", currentQueueName, messages.size());
+
+        Map<DeviceHour, Double> deltas = new LinkedHashMap<>();
+        for (MeasurementMessage message : messages) {
+            if (message.getDeviceId() == null || message.getTimestamp() == null) {
+                log.warn("Skipping invalid measurement: {}", message);
+                continue;
+            }
+            double value = message.getMeasurementValue() != null ? message.getMeasurementValue() : 0.0;
+            deltas.merge(new DeviceHour(message.getDeviceId(), hourStartOf(message)), value, Double::sum);
+        }
+
+        // Throws on failure so the whole batch is retried, then dead-lettered; acks follow the commit.
+        hourlyConsumptionRepository.addConsumptionBatch(deltas);
+        // Only after the commit, so a redelivered batch is not stored twice
+        messages.stream()
+                .filter(message -> message.getDeviceId() != null && message.getTimestamp() != null)
+                .forEach(this::storeRaw);
+
+        deltas.forEach((key, delta) -> {
+            try {
+                double hourlyTotal = consumptionBuffer.addPersisted(key, delta);
+                checkAndNotifyOverconsumption(key, hourlyTotal);
+            } catch (Exception e) {
+                log.error("Error checking consumption for device {}: {}", key.deviceId(), e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Applies a reading from the measurement log. Replayed readings skip the hourly totals when
+     * {@code ingest_cursor} shows they were committed, and the raw store when one of its blocks
+     * holds them. They raise no alerts: those were raised before the restart or are about hours
+     * long past.
+     */
+    private void applyLogged(LogRecord record, boolean replayed) {
+        boolean hasValue = !Double.isNaN(record.value());
+
+        if (rawStore.isPresent() && hasValue) {
+            storeRaw(record, replayed);
+        }
+        if (replayed && record.sequence() <= hourlyDurableAtStart) {
+            return;
+        }
+
+        LocalDateTime hourStart = hourStartOf(record.timestamp());
+        double hourlyTotal = consumptionBuffer.add(
+                record.deviceId(), hourStart, hasValue ? record.value() : 0.0, record.sequence());
+        if (!replayed) {
+            try {
+                checkAndNotifyOverconsumption(new DeviceHour(record.deviceId(), hourStart), hourlyTotal);
+            } catch (Exception e) {
+                log.error("Error checking consumption for device {}: {}", record.deviceId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void storeRaw(LogRecord record, boolean replayed) {
+        RawMeasurementStore store = rawStore.orElseThrow();
+        if (!replayed) {
+            store.append(record.deviceId(), record.timestamp(), record.value(), record.sequence());
+            return;
+        }
+        try {
+            store.replay(record.deviceId(), record.timestamp(), record.value(), record.sequence());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void storeRaw(MeasurementMessage message) {
+        if (message.getMeasurementValue() != null) {
+            rawStore.ifPresent(store -> store.append(
+                    message.getDeviceId(), message.getTimestamp(), message.getMeasurementValue()));
+        }
+    }
+
+    private LocalDateTime hourStartOf(MeasurementMessage message) {
+        return hourStartOf(message.getTimestamp());
+    }
+
+    private LocalDateTime hourStartOf(Instant timestamp) {
+        LocalDateTime dateTime = LocalDateTime.ofInstant(
+                timestamp,
+                ZoneId.systemDefault()
+        );
+        return dateTime.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private void checkAndNotifyOverconsumption(DeviceHour key, double currentTotalConsumption) {
+        deviceCache.get(key.deviceId()).ifPresent(device -> {
             Double maxLimit = device.getMaxConsumption();
+            if (maxLimit == null) {
+                return;
+            }
 
-            if (maxLimit != null && currentTotalConsumption > maxLimit) {
-                log.warn("ALERT: Device {} exceeded limit! Current: {}, Max: {}",
-                        device.getName(), currentTotalConsumption, maxLimit);
-
-                NotificationDTO notification = new NotificationDTO(
-                        device.getUserId(),
-                        device.getId(),
-                        String.format("High energy usage detected for '%s'! Current: %.2f kWh (Limit: %.2f kWh)",
-                                device.getName(), currentTotalConsumption, maxLimit)
-                );
-                rabbitTemplate.convertAndSend(notificationQueue, notification);
+            int level = alertService.levelToNotify(key, currentTotalConsumption, maxLimit);
+            if (level == 0) {
+                return;
             }
+
+            log.warn("ALERT: Device {} exceeded limit! Current: {}, Max: {}, Level: {}",
+                    device.getName(), currentTotalConsumption, maxLimit, level);
+
+            String text = level == 1
+                    ? String.format("High energy usage detected for '%s'! Current: %.2f kWh (Limit: %.2f kWh)",
+                            device.getName(), currentTotalConsumption, maxLimit)
+                    : String.format("Energy usage for '%s' is above %.1fx the limit! Current: %.2f kWh (Limit: %.2f kWh)",
+                            device.getName(), alertService.multipleOf(level), currentTotalConsumption, maxLimit);
+
+            NotificationDTO notification = new NotificationDTO(device.getUserId(), device.getId(), text);
+            rabbitTemplate.convertAndSend(notificationQueue, notification);
         });
     }
 
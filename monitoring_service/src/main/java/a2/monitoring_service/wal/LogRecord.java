@@ -0,0 +1,9 @@
+package a2.monitoring_service.wal;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A reading as stored in the {@link MeasurementLog}. {@code value} is NaN when the message had none.
+ */
+public record LogRecord(long sequence, UUID deviceId, Instant timestamp, double value) {}
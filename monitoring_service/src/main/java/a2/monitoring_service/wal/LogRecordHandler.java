@@ -0,0 +1,11 @@
+package a2.monitoring_service.wal;
+
+@FunctionalInterface
+public interface LogRecordHandler {
+
+    /**
+     * Applies a record, in sequence order. {@code replayed} is true for records read back from
+     * disk at startup.
+     */
+    void apply(LogRecord record, boolean replayed);
+}
@@ -0,0 +1,417 @@
+package a2.monitoring_service.wal;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of incoming readings in memory-mapped segment files. A reading is acknowledged
+ * once it is in the mapped segment, which survives a crash of the process; the page cache is
+ * forced to disk on every checkpoint tick. A single applier thread hands records, in sequence
+ * order, to the handler that aggregates them. At most {@code queue-capacity} records wait for it;
+ * an append that finds no room within {@code append-timeout-ms} fails, so the message is
+ * redelivered, and never waits while holding the append lock.
+ *
+ * <p>Each consumer of the records registers a cursor reporting the highest sequence it has made
+ * durable on its own. Cursors are saved as checkpoints, segments below every checkpoint are
+ * deleted, and on startup the records after the lowest checkpoint are replayed. A checkpoint may
+ * trail what its consumer made durable, so the handler decides which replayed records it still
+ * needs from its own durable state.
+ *
+ * <p>The owner shuts the log down in steps: {@link #stopApplier()}, then flushing what the handler
+ * applied, then {@link #close()}, whose checkpoint covers the flushed records.
+ *
+ * <p>Segments are named after their first sequence. A record is its payload length, the CRC32 of
+ * the payload, then sequence, device id, timestamp (epoch millis) and value. The length is written
+ * last, so a record cut short by a crash reads as the end of the segment.
+ */
+@Component
+@ConditionalOnProperty(name = "monitoring.wal.enabled", havingValue = "true")
+public class MeasurementLog {
+
+    private static final Logger log = LoggerFactory.getLogger(MeasurementLog.class);
+
+    private static final int PAYLOAD_BYTES = 40;
+    private static final int RECORD_BYTES = 8 + PAYLOAD_BYTES;
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "checkpoint.properties";
+    private static final long CLOSE_LOCK_TIMEOUT_SECONDS = 10;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final BlockingQueue<LogRecord> pending = new LinkedBlockingQueue<>();
+    private final Semaphore queueSlots;
+    private final int queueCapacity;
+    private final long appendTimeoutMs;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_BYTES);
+    private final Map<String, Long> checkpoints = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> cursors = new ConcurrentHashMap<>();
+
+    private FileChannel segmentChannel;
+    private volatile MappedByteBuffer segment;
+    private long nextSequence;
+
+    private volatile Thread applier;
+    private volatile boolean stopping;
+    private volatile boolean closed;
+
+    public MeasurementLog(@Value("${monitoring.wal.directory:./data/wal}") Path directory,
+                          @Value("${monitoring.wal.segment-bytes:67108864}") int segmentBytes,
+                          @Value("${monitoring.wal.queue-capacity:10000}") int queueCapacity,
+                          @Value("${monitoring.wal.append-timeout-ms:5000}") long appendTimeoutMs) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes / RECORD_BYTES * RECORD_BYTES;
+        this.queueSlots = new Semaphore(queueCapacity);
+        this.queueCapacity = queueCapacity;
+        this.appendTimeoutMs = appendTimeoutMs;
+
+        loadCheckpoints();
+        long lastSequence = lastSequenceOnDisk();
+        for (long checkpoint : checkpoints.values()) {
+            lastSequence = Math.max(lastSequence, checkpoint);
+        }
+        nextSequence = lastSequence + 1;
+        openSegment(nextSequence);
+        log.info("Measurement log in {}, next sequence {}", this.directory.toAbsolutePath(), nextSequence);
+    }
+
+    /**
+     * Logs a reading and queues it for the applier. Waits while the applier is a full queue
+     * behind, which holds back the message listener, and throws once that takes longer than
+     * {@code append-timeout-ms}, before anything is logged.
+     */
+    public void append(UUID deviceId, Instant timestamp, double value) throws IOException, InterruptedException {
+        if (stopping) {
+            throw new IOException("Measurement log is shutting down");
+        }
+        // Reserve the queue slot first, so the append lock is only ever held for the write
+        if (!queueSlots.tryAcquire(appendTimeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new IOException("Measurement log applier is " + queueCapacity + " readings behind");
+        }
+        boolean queued = false;
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Measurement log is closed");
+            }
+            if (segment.remaining() < RECORD_BYTES) {
+                segment.force();
+                segmentChannel.close();
+                openSegment(nextSequence);
+            }
+            long sequence = nextSequence;
+            long epochMilli = timestamp.toEpochMilli();
+
+            payload.clear();
+            payload.putLong(sequence)
+                    .putLong(deviceId.getMostSignificantBits())
+                    .putLong(deviceId.getLeastSignificantBits())
+                    .putLong(epochMilli)
+                    .putDouble(value)
+                    .flip();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            payload.flip();
+
+            int position = segment.position();
+            segment.put(position + 8, payload, 0, PAYLOAD_BYTES);
+            segment.putInt(position + 4, (int) crc.getValue());
+            segment.putInt(position, PAYLOAD_BYTES);
+            segment.position(position + RECORD_BYTES);
+            nextSequence++;
+
+            pending.add(new LogRecord(sequence, deviceId, Instant.ofEpochMilli(epochMilli), value));
+            queued = true;
+        } finally {
+            appendLock.unlock();
+            if (!queued) {
+                queueSlots.release();
+            }
+        }
+    }
+
+    /**
+     * Replays the records after the lowest checkpoint of {@code cursors}, then starts applying new
+     * records.
+     */
+    public void start(LogRecordHandler handler, Map<String, LongSupplier> cursors) throws IOException {
+        this.cursors.putAll(cursors);
+        long durable = cursors.values().stream().mapToLong(LongSupplier::getAsLong).max().orElse(0);
+        if (durable >= nextSequence) {
+            // The log was lost while a consumer kept its cursor; number new records above it
+            log.warn("Measurement log is behind durable sequence {}, continuing after it", durable);
+            restartAt(durable + 1);
+        }
+        long replayFrom = cursors.keySet().stream()
+                .mapToLong(this::checkpoint)
+                .min()
+                .orElse(nextSequence - 1);
+
+        long replayed = replay(replayFrom, handler);
+        log.info("Replayed {} logged readings after sequence {}", replayed, replayFrom);
+
+        applier = new Thread(() -> applyLoop(handler), "measurement-log-applier");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    public long checkpoint(String cursor) {
+        return checkpoints.getOrDefault(cursor, 0L);
+    }
+
+    /**
+     * Forces the current segment to disk, saves the cursors and deletes segments every cursor
+     * has passed.
+     */
+    @Scheduled(fixedDelayString = "${monitoring.wal.checkpoint-interval-ms:1000}")
+    public void checkpoint() {
+        try {
+            segment.force();
+            if (cursors.isEmpty()) {
+                return;
+            }
+            // A cursor may report less after a restart, before it has applied anything
+            cursors.forEach((name, cursor) -> checkpoints.merge(name, cursor.getAsLong(), Math::max));
+            saveCheckpoints();
+            // Only registered cursors count, a consumer that was disabled must not pin the log
+            deleteSegmentsUpTo(cursors.keySet().stream().mapToLong(this::checkpoint).min().orElse(0));
+        } catch (IOException | RuntimeException e) {
+            log.error("Measurement log checkpoint failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lets the applier finish the queued records and stops it. New records must no longer be
+     * appended.
+     */
+    public void stopApplier() throws InterruptedException {
+        stopping = true;
+        Thread thread = applier;
+        if (thread != null) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Stops the applier if it still runs, takes a last checkpoint and closes the segment. Gives up
+     * on both if an append does not let go of the log in time; the next start replays from the
+     * previous checkpoint.
+     */
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        stopApplier();
+        if (!appendLock.tryLock(CLOSE_LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Measurement log is still being appended to, closing without a last checkpoint");
+            return;
+        }
+        try {
+            if (closed) {
+                return;
+            }
+            checkpoint();
+            segmentChannel.close();
+            closed = true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void applyLoop(LogRecordHandler handler) {
+        try {
+            while (!stopping || !pending.isEmpty()) {
+                LogRecord record = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (record == null) {
+                    continue;
+                }
+                if (!applyWithRetry(handler, record)) {
+                    return;
+                }
+                queueSlots.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Applies a record, retrying until it succeeds: skipping it would let the cursors move past a
+     * reading that was never aggregated. Gives up only on shutdown, leaving it to the next replay.
+     */
+    private boolean applyWithRetry(LogRecordHandler handler, LogRecord record) throws InterruptedException {
+        while (true) {
+            try {
+                handler.apply(record, false);
+                return true;
+            } catch (RuntimeException e) {
+                log.error("Failed to apply logged reading {}, retrying: {}", record.sequence(), e.getMessage());
+                if (stopping) {
+                    return false;
+                }
+                TimeUnit.SECONDS.sleep(1);
+            }
+        }
+    }
+
+    private long replay(long afterSequence, LogRecordHandler handler) throws IOException {
+        long replayed = 0;
+        for (Path file : segments()) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                LogRecord record;
+                while ((record = readRecord(buffer)) != null) {
+                    if (record.sequence() > afterSequence) {
+                        handler.apply(record, true);
+                        replayed++;
+                    }
+                }
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Reads the record at the buffer's position, or returns {@code null} at the end of the
+     * segment's records.
+     */
+    private static LogRecord readRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < RECORD_BYTES) {
+            return null;
+        }
+        int position = buffer.position();
+        int length = buffer.getInt(position);
+        if (length != PAYLOAD_BYTES) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + 8, PAYLOAD_BYTES));
+        if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+            log.warn("Ignoring torn record at offset {} of the measurement log", position);
+            return null;
+        }
+        buffer.position(position + 8);
+        LogRecord record = new LogRecord(
+                buffer.getLong(),
+                new UUID(buffer.getLong(), buffer.getLong()),
+                Instant.ofEpochMilli(buffer.getLong()),
+                buffer.getDouble());
+        return record;
+    }
+
+    private long lastSequenceOnDisk() throws IOException {
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        Path last = segments.get(segments.size() - 1);
+        long lastSequence = firstSequenceOf(last) - 1;
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            LogRecord record;
+            while ((record = readRecord(buffer)) != null) {
+                lastSequence = record.sequence();
+            }
+        }
+        return lastSequence;
+    }
+
+    private void restartAt(long sequence) throws IOException {
+        appendLock.lock();
+        try {
+            // Nothing has been appended to the segment opened by the constructor yet
+            segmentChannel.close();
+            Files.delete(directory.resolve(segmentName(nextSequence)));
+            nextSequence = sequence;
+            openSegment(nextSequence);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(segmentName(firstSequence));
+        segmentChannel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    }
+
+    private void deleteSegmentsUpTo(long sequence) throws IOException {
+        List<Path> segments = segments();
+        // A segment ends right before the next one starts; the last one is still being written
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSequenceOf(segments.get(i + 1)) - 1 <= sequence) {
+                Files.delete(segments.get(i));
+                log.debug("Deleted measurement log segment {}", segments.get(i).getFileName());
+            }
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static String segmentName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SEGMENT_SUFFIX);
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void loadCheckpoints() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+        }
+        properties.forEach((name, value) -> checkpoints.put((String) name, Long.parseLong((String) value)));
+    }
+
+    private void saveCheckpoints() throws IOException {
+        Properties properties = new Properties();
+        checkpoints.forEach((name, value) -> properties.setProperty(name, Long.toString(value)));
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (OutputStream output = Files.newOutputStream(temporary)) {
+            properties.store(output, null);
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,38 @@
+-- Schema as previously created by Hibernate's ddl-auto=update. Written idempotently so that
+-- existing databases, baselined below this version, and fresh ones end up the same.
+
+CREATE TABLE IF NOT EXISTS synced_users (
+    id             uuid                        NOT NULL PRIMARY KEY,
+    username       varchar(30)                 NOT NULL,
+    email          varchar(50)                 NOT NULL,
+    deleted        boolean                     NOT NULL,
+    last_sync_time timestamp(6) with time zone NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS synced_devices (
+    id              uuid                        NOT NULL PRIMARY KEY,
+    name            varchar(100)                NOT NULL,
+    user_id         uuid,
+    max_consumption double precision,
+    deleted         boolean                     NOT NULL,
+    last_sync_time  timestamp(6) with time zone NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS hourly_consumption (
+    id                bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    device_id         uuid             NOT NULL,
+    hour_timestamp    timestamp(6)     NOT NULL,
+    total_consumption double precision NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS consumption_alerts (
+    id             bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    device_id      uuid                        NOT NULL,
+    hour_timestamp timestamp(6)                NOT NULL,
+    level          integer                     NOT NULL,
+    notified_at    timestamp(6) with time zone NOT NULL
+);
+
+-- Backs the ON CONFLICT upsert in ConsumptionAlertRepository.raiseLevel
+CREATE UNIQUE INDEX IF NOT EXISTS uk_consumption_alerts_device_hour
+    ON consumption_alerts (device_id, hour_timestamp);
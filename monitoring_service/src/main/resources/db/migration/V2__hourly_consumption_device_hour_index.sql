@@ -0,0 +1,26 @@
+-- Unique (device_id, hour_timestamp) index. It serves every hourly_consumption read, which are
+-- all by device and hour range, and is the arbiter of the ON CONFLICT upserts.
+--
+-- Databases created before the write path became an upsert may hold several rows per device and
+-- hour, which made ddl-auto silently skip the constraint. Merge them into the oldest row first.
+
+UPDATE hourly_consumption keep
+SET total_consumption = duplicates.total
+FROM (
+    SELECT min(id) AS keep_id, sum(total_consumption) AS total
+    FROM hourly_consumption
+    GROUP BY device_id, hour_timestamp
+    HAVING count(*) > 1
+) duplicates
+WHERE keep.id = duplicates.keep_id;
+
+DELETE FROM hourly_consumption extra
+USING hourly_consumption keep
+WHERE extra.device_id = keep.device_id
+  AND extra.hour_timestamp = keep.hour_timestamp
+  AND extra.id > keep.id;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_hourly_consumption_device_hour
+    ON hourly_consumption (device_id, hour_timestamp);
+
+ANALYZE hourly_consumption;
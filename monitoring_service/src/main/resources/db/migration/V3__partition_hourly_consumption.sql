@@ -0,0 +1,56 @@
+-- Monthly range partitions of hourly_consumption on hour_timestamp, named
+-- hourly_consumption_pYYYY_MM. HourlyConsumptionPartitionManager keeps future months created
+-- and drops expired ones. Rows outside every month land in the default partition and are moved
+-- into their month when it is created.
+
+ALTER TABLE hourly_consumption RENAME TO hourly_consumption_unpartitioned;
+-- Free the names the partitioned table's indexes will use
+ALTER TABLE hourly_consumption_unpartitioned DROP CONSTRAINT IF EXISTS uk_hourly_consumption_device_hour;
+DROP INDEX IF EXISTS uk_hourly_consumption_device_hour;
+ALTER TABLE hourly_consumption_unpartitioned DROP CONSTRAINT IF EXISTS hourly_consumption_pkey;
+
+-- Unique constraints of a partitioned table must contain the partition key
+CREATE TABLE hourly_consumption (
+    id                bigint           NOT NULL,
+    device_id         uuid             NOT NULL,
+    hour_timestamp    timestamp(6)     NOT NULL,
+    total_consumption double precision NOT NULL,
+    PRIMARY KEY (id, hour_timestamp)
+) PARTITION BY RANGE (hour_timestamp);
+
+CREATE UNIQUE INDEX uk_hourly_consumption_device_hour
+    ON hourly_consumption (device_id, hour_timestamp);
+
+CREATE TABLE hourly_consumption_default PARTITION OF hourly_consumption DEFAULT;
+
+DO $$
+DECLARE
+    bound      timestamp;
+    last_month timestamp := date_trunc('month', now()::timestamp) + interval '1 month';
+BEGIN
+    SELECT coalesce(date_trunc('month', min(hour_timestamp)), date_trunc('month', now()::timestamp))
+    INTO bound
+    FROM hourly_consumption_unpartitioned;
+
+    WHILE bound <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF hourly_consumption FOR VALUES FROM (%L) TO (%L)',
+                       'hourly_consumption_p' || to_char(bound, 'YYYY_MM'),
+                       bound,
+                       bound + interval '1 month');
+        bound := bound + interval '1 month';
+    END LOOP;
+END
+$$;
+
+INSERT INTO hourly_consumption (id, device_id, hour_timestamp, total_consumption)
+SELECT id, device_id, hour_timestamp, total_consumption
+FROM hourly_consumption_unpartitioned;
+
+DROP TABLE hourly_consumption_unpartitioned;
+
+-- Ids keep coming from a sequence that continues after the copied rows
+CREATE SEQUENCE hourly_consumption_id_seq OWNED BY hourly_consumption.id;
+ALTER TABLE hourly_consumption ALTER COLUMN id SET DEFAULT nextval('hourly_consumption_id_seq');
+SELECT setval('hourly_consumption_id_seq', coalesce(max(id), 0) + 1, false) FROM hourly_consumption;
+
+ANALYZE hourly_consumption;
@@ -0,0 +1,37 @@
+-- Daily and monthly rollups of hourly_consumption, maintained by ConsumptionRollupService.
+-- Both tiers cover exactly the hours before rollup_watermark.rolled_up_to, so a range query can
+-- read closed periods from a rollup and only the rest from hourly rows.
+
+CREATE TABLE daily_consumption (
+    device_id         uuid             NOT NULL,
+    day               date             NOT NULL,
+    total_consumption double precision NOT NULL,
+    PRIMARY KEY (device_id, day)
+);
+
+CREATE TABLE monthly_consumption (
+    device_id         uuid             NOT NULL,
+    month             date             NOT NULL,
+    total_consumption double precision NOT NULL,
+    PRIMARY KEY (device_id, month)
+);
+
+CREATE TABLE rollup_watermark (
+    id           smallint     NOT NULL PRIMARY KEY CHECK (id = 1),
+    rolled_up_to timestamp(6) NOT NULL
+);
+
+-- Backfill everything before the previous hour; the service takes over from there
+INSERT INTO rollup_watermark (id, rolled_up_to)
+VALUES (1, date_trunc('hour', now()::timestamp) - interval '1 hour');
+
+INSERT INTO daily_consumption (device_id, day, total_consumption)
+SELECT device_id, hour_timestamp::date, sum(total_consumption)
+FROM hourly_consumption
+WHERE hour_timestamp < (SELECT rolled_up_to FROM rollup_watermark)
+GROUP BY device_id, hour_timestamp::date;
+
+INSERT INTO monthly_consumption (device_id, month, total_consumption)
+SELECT device_id, date_trunc('month', day)::date, sum(total_consumption)
+FROM daily_consumption
+GROUP BY device_id, date_trunc('month', day)::date;
@@ -0,0 +1,28 @@
+-- Days that received writes behind rollup_watermark.rolled_up_to. A late reading for an hour that
+-- was already rolled up changes hourly_consumption only, so ConsumptionRollupService recomputes
+-- these days, and their months, on its next run and then clears them.
+
+CREATE TABLE rollup_dirty_days (
+    device_id uuid NOT NULL,
+    day       date NOT NULL,
+    PRIMARY KEY (device_id, day)
+);
+
+-- Recorded by a trigger so that every writer of hourly_consumption is covered. FOR SHARE makes a
+-- write wait for a rollup in progress, which holds the watermark row FOR UPDATE, and then compare
+-- against the watermark that rollup committed; the rollup in turn waits for writes that hold the
+-- row, so it sees their rows.
+CREATE FUNCTION mark_rollup_dirty_day() RETURNS trigger AS $$
+BEGIN
+    IF NEW.hour_timestamp < (SELECT rolled_up_to FROM rollup_watermark WHERE id = 1 FOR SHARE) THEN
+        INSERT INTO rollup_dirty_days (device_id, day)
+        VALUES (NEW.device_id, NEW.hour_timestamp::date)
+        ON CONFLICT DO NOTHING;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER hourly_consumption_rollup_dirty_day
+    AFTER INSERT OR UPDATE OF total_consumption ON hourly_consumption
+    FOR EACH ROW EXECUTE FUNCTION mark_rollup_dirty_day();
@@ -0,0 +1,9 @@
+-- Highest measurement log sequence whose reading, and every reading before it, a replica has
+-- committed to hourly_consumption. HourlyConsumptionBuffer writes it in the same transaction as the
+-- hourly upserts, so a replay after a crash skips exactly the readings already counted. Each
+-- replica has its own log, and its row is keyed by the replica's queue name.
+
+CREATE TABLE ingest_cursor (
+    replica         varchar(100) NOT NULL PRIMARY KEY,
+    hourly_sequence bigint       NOT NULL
+);
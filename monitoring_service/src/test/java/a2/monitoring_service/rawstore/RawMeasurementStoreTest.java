@@ -0,0 +1,324 @@
+package a2.monitoring_service.rawstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RawMeasurementStoreTest {
+
+    private static final UUID DEVICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID OTHER_DEVICE = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final Instant DAY_START = Instant.parse("2026-10-01T00:00:00Z");
+    private static final Instant DAY_END = Instant.parse("2026-10-02T00:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void scansOpenAndWrittenBlocksInTimeOrder() throws IOException {
+        RawMeasurementStore store = new RawMeasurementStore(directory, 2, 0);
+        store.append(DEVICE, at(600), 1.0);
+        store.append(OTHER_DEVICE, at(600), 9.0);
+        store.append(DEVICE, at(1_800), 3.0);
+        store.append(DEVICE, at(1_200), 2.0);
+
+        assertThat(scan(store, DEVICE)).containsExactly(
+                new RawReading(at(600), 1.0), new RawReading(at(1_200), 2.0), new RawReading(at(1_800), 3.0));
+    }
+
+    @Test
+    void truncatesTimestampsToTheSecond() throws IOException {
+        RawMeasurementStore store = new RawMeasurementStore(directory, 144, 0);
+        store.append(DEVICE, at(600).plusMillis(999), 1.0);
+
+        assertThat(scan(store, DEVICE)).containsExactly(new RawReading(at(600), 1.0));
+    }
+
+    @Test
+    void readsBlocksWrittenBeforeARestart() throws IOException {
+        RawMeasurementStore store = new RawMeasurementStore(directory, 144, 0);
+        store.append(DEVICE, at(600), 1.0);
+        store.append(DEVICE, at(1_200), 2.0);
+        store.flushOnShutdown();
+
+        assertThat(scan(new RawMeasurementStore(directory, 144, 0), DEVICE))
+                .containsExactly(new RawReading(at(600), 1.0), new RawReading(at(1_200), 2.0));
+    }
+
+    @Test
+    void cutsOffATornBlockOnStartup() throws IOException {
+        RawMeasurementStore store = new RawMeasurementStore(directory, 1, 0);
+        store.append(DEVICE, at(600), 1.0);
+        store.append(DEVICE, at(1_200), 2.0);
+        Path file = directory.resolve("2026-10-01.raw");
+        long blockBytes = Files.size(file) / 2;
+
+        // A crash halfway through the second block leaves its header and part of its payload
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(2 * blockBytes - 4);
+        }
+        store = new RawMeasurementStore(directory, 1, 0);
+        assertThat(Files.size(file)).isEqualTo(blockBytes);
+
+        store.append(DEVICE, at(1_800), 3.0);
+        assertThat(scan(new RawMeasurementStore(directory, 1, 0), DEVICE))
+                .containsExactly(new RawReading(at(600), 1.0), new RawReading(at(1_800), 3.0));
+    }
+
+    @Test
+    void cutsOffAPartialHeaderOnStartup() throws IOException {
+        RawMeasurementStore store = new RawMeasurementStore(directory, 1, 0);
+        store.append(DEVICE, at(600), 1.0);
+        Path file = directory.resolve("2026-10-01.raw");
+        long blockBytes = Files.size(file);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(20));
+        }
+        new RawMeasurementStore(directory, 1, 0);
+
+        assertThat(Files.size(file)).isEqualTo(blockBytes);
+    }
+
+    @Test
+    void skipsABlockWithABadChecksum() throws IOException {
+        RawMeasurementStore store = new RawMeasurementStore(directory, 1, 0);
+        store.append(DEVICE, at(600), 1.0);
+        store.append(DEVICE, at(1_200), 2.0);
+        Path file = directory.resolve("2026-10-01.raw");
+
+        // Flip a payload byte of the first block
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, 70);
+            b.put(0, (byte) ~b.get(0)).rewind();
+            channel.write(b, 70);
+        }
+
+        assertThat(scan(new RawMeasurementStore(directory, 1, 0), DEVICE))
+                .containsExactly(new RawReading(at(1_200), 2.0));
+    }
+
+    @Test
+    void cutsAFailedWriteBackAndKeepsTheBlockOpen() throws IOException {
+        FailingStore store = new FailingStore(directory);
+        store.append(DEVICE, at(600), 1.0);
+        store.flushOnShutdown();
+        Path file = directory.resolve("2026-10-01.raw");
+        long size = Files.size(file);
+
+        store.failAfterBytes = 20;
+        store.append(DEVICE, at(1_200), 2.0);
+        store.flushOnShutdown();
+
+        assertThat(Files.size(file)).isEqualTo(size);
+        assertThat(scan(store, DEVICE))
+                .containsExactly(new RawReading(at(600), 1.0), new RawReading(at(1_200), 2.0));
+
+        store.failAfterBytes = -1;
+        store.flushOnShutdown();
+
+        assertThat(Files.size(file)).isGreaterThan(size);
+        assertThat(scan(new RawMeasurementStore(directory, 144, 0), DEVICE))
+                .containsExactly(new RawReading(at(600), 1.0), new RawReading(at(1_200), 2.0));
+    }
+
+    @Test
+    void reportsTheSequenceBeforeTheOldestOpenBlockAsDurable() throws IOException {
+        RawMeasurementStore store = new RawMeasurementStore(directory, 2, 0);
+        store.append(DEVICE, at(600), 1.0, 10);
+        store.append(OTHER_DEVICE, at(600), 2.0, 11);
+        assertThat(store.durableSequence()).isEqualTo(9);
+
+        store.append(DEVICE, at(1_200), 3.0, 12);
+        assertThat(store.durableSequence()).isEqualTo(10);
+
+        store.append(OTHER_DEVICE, at(1_200), 4.0, 13);
+        assertThat(store.durableSequence()).isEqualTo(13);
+    }
+
+    @Test
+    void replaysOnlyTheLoggedReadingsMissingFromDisk() throws IOException {
+        RawMeasurementStore store = new RawMeasurementStore(directory, 2, 0);
+        store.append(DEVICE, at(600), 1.0, 10);
+        store.append(OTHER_DEVICE, at(600), 2.0, 11);
+        store.append(DEVICE, at(1_200), 3.0, 12);
+        store.append(DEVICE, at(1_800), 5.0, 14);
+
+        // A restart loses the open blocks, holding 11 and 14, and replays everything after 9
+        RawMeasurementStore restarted = new RawMeasurementStore(directory, 2, 0);
+        restarted.replay(DEVICE, at(600), 1.0, 10);
+        restarted.replay(OTHER_DEVICE, at(600), 2.0, 11);
+        restarted.replay(DEVICE, at(1_200), 3.0, 12);
+        restarted.replay(DEVICE, at(1_800), 5.0, 14);
+
+        assertThat(scan(restarted, DEVICE)).containsExactly(
+                new RawReading(at(600), 1.0), new RawReading(at(1_200), 3.0), new RawReading(at(1_800), 5.0));
+        assertThat(scan(restarted, OTHER_DEVICE)).containsExactly(new RawReading(at(600), 2.0));
+        assertThat(restarted.durableSequence()).isEqualTo(10);
+
+        restarted.flushOnShutdown();
+        assertThat(restarted.durableSequence()).isEqualTo(14);
+    }
+
+    @Test
+    void countsReplayedReadingsFoundOnDiskAsDurable() throws IOException {
+        RawMeasurementStore store = new RawMeasurementStore(directory, 1, 0);
+        store.append(DEVICE, at(600), 1.0, 10);
+
+        RawMeasurementStore restarted = new RawMeasurementStore(directory, 1, 0);
+        restarted.replay(DEVICE, at(600), 1.0, 10);
+
+        assertThat(restarted.durableSequence()).isEqualTo(10);
+        assertThat(scan(restarted, DEVICE)).containsExactly(new RawReading(at(600), 1.0));
+    }
+
+    private static Instant at(long secondsIntoDay) {
+        return DAY_START.plusSeconds(secondsIntoDay);
+    }
+
+    private static List<RawReading> scan(RawMeasurementStore store, UUID deviceId) throws IOException {
+        List<RawReading> readings = new ArrayList<>();
+        store.scan(deviceId, DAY_START, DAY_END, readings::add);
+        return readings;
+    }
+
+    /**
+     * Store whose block writes fail after {@code failAfterBytes} bytes, as on a full disk.
+     */
+    private static class FailingStore extends RawMeasurementStore {
+
+        int failAfterBytes = -1;
+
+        FailingStore(Path directory) throws IOException {
+            super(directory, 144, 0);
+        }
+
+        @Override
+        FileChannel openForAppend(Path file) throws IOException {
+            FileChannel channel = super.openForAppend(file);
+            return failAfterBytes < 0 ? channel : new FailingChannel(channel, failAfterBytes);
+        }
+    }
+
+    private static class FailingChannel extends FileChannel {
+
+        private final FileChannel delegate;
+        private int remaining;
+
+        FailingChannel(FileChannel delegate, int failAfterBytes) {
+            this.delegate = delegate;
+            this.remaining = failAfterBytes;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (remaining == 0) {
+                throw new IOException("No space left on device");
+            }
+            ByteBuffer part = src.slice(src.position(), Math.min(src.remaining(), remaining));
+            int written = delegate.write(part);
+            src.position(src.position() + written);
+            remaining -= written;
+            return written;
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package a2.monitoring_service.rawstore;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SeriesEncoderTest {
+
+    private static final long START = 1_760_000_000L;
+
+    @Test
+    void roundTripsSpecialValues() {
+        double[] values = {0.0, -0.0, 1.5, -1.5, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE, 0.1, 0.1, -273.15};
+        long[] timestamps = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            timestamps[i] = START + 600L * i;
+        }
+
+        assertRoundTrip(timestamps, values);
+    }
+
+    @Test
+    void roundTripsIrregularDeltas() {
+        long[] timestamps = {
+                START,
+                START + 600,
+                START + 1_199,    // jitter, 7-bit delta of delta
+                START + 1_500,    // 9-bit
+                START + 3_000,    // 12-bit
+                START + 90_000,   // 64-bit escape
+                START + 90_000,   // repeated second
+                START + 89_000,   // late reading, negative delta
+                START + 89_600
+        };
+        double[] values = new double[timestamps.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 2 == 0 ? i * 0.37 : -i * 1.1;
+        }
+
+        assertRoundTrip(timestamps, values);
+    }
+
+    @Test
+    void roundTripsExtremeDeltaOfDelta() {
+        assertRoundTrip(new long[] {0, 1, Long.MAX_VALUE / 2, Long.MIN_VALUE / 2}, new double[] {1, 2, 3, 4});
+    }
+
+    @Test
+    void roundTripsFirstDeltaAtTheEscapeBoundary() {
+        long escape = SeriesEncoder.FIRST_DELTA_ESCAPE;
+        assertRoundTrip(new long[] {START, START + escape - 1, START + escape}, new double[] {1, 2, 3});
+        assertRoundTrip(new long[] {START, START + escape, START + 2 * escape}, new double[] {1, 2, 3});
+        assertRoundTrip(new long[] {START, START - 1}, new double[] {1, 2});
+    }
+
+    @Test
+    void roundTripsSingleReading() {
+        assertRoundTrip(new long[] {START}, new double[] {42.0});
+    }
+
+    @Test
+    void decodesNothingForAnEmptySeries() {
+        List<Long> timestamps = new ArrayList<>();
+        SeriesDecoder.decode(new SeriesEncoder().toByteArray(), 0, (timestamp, value) -> timestamps.add(timestamp));
+
+        assertThat(timestamps).isEmpty();
+    }
+
+    @Test
+    void roundTripsRandomSeries() {
+        Random random = new Random(7);
+        long[] timestamps = new long[1_000];
+        double[] values = new double[timestamps.length];
+        long timestamp = START;
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamp += random.nextInt(10) == 0 ? random.nextInt(100_000) - 1_000 : 600 + random.nextInt(3) - 1;
+            timestamps[i] = timestamp;
+            values[i] = random.nextInt(5) == 0 ? values[Math.max(i - 1, 0)] : random.nextGaussian() * 1e3;
+        }
+
+        assertRoundTrip(timestamps, values);
+    }
+
+    @Test
+    void storesFixedIntervalTimestampsInOneBitEach() {
+        SeriesEncoder encoder = new SeriesEncoder();
+        for (int i = 0; i < 144; i++) {
+            encoder.append(START + 600L * i, 2.5);
+        }
+
+        // First timestamp and value, the 14-bit first delta, then one bit each for time and value
+        int expectedBits = 64 + 64 + (14 + 1) + 142 * 2;
+        assertThat(encoder.toByteArray()).hasSize((expectedBits + 7) / 8);
+    }
+
+    @Test
+    void tracksTimestampBounds() {
+        SeriesEncoder encoder = new SeriesEncoder();
+        encoder.append(START + 600, 1);
+        encoder.append(START, 2);
+        encoder.append(START + 1_200, 3);
+
+        assertThat(encoder.count()).isEqualTo(3);
+        assertThat(encoder.minTimestamp()).isEqualTo(START);
+        assertThat(encoder.maxTimestamp()).isEqualTo(START + 1_200);
+    }
+
+    private static void assertRoundTrip(long[] timestamps, double[] values) {
+        SeriesEncoder encoder = new SeriesEncoder();
+        for (int i = 0; i < timestamps.length; i++) {
+            encoder.append(timestamps[i], values[i]);
+        }
+
+        List<Long> decodedTimestamps = new ArrayList<>();
+        List<Long> decodedValues = new ArrayList<>();
+        SeriesDecoder.decode(encoder.toByteArray(), encoder.count(), (timestamp, value) -> {
+            decodedTimestamps.add(timestamp);
+            decodedValues.add(Double.doubleToRawLongBits(value));
+        });
+
+        List<Long> expectedValues = new ArrayList<>();
+        for (double value : values) {
+            expectedValues.add(Double.doubleToRawLongBits(value));
+        }
+        assertThat(decodedTimestamps).containsExactly(Arrays.stream(timestamps).boxed().toArray(Long[]::new));
+        assertThat(decodedValues).containsExactlyElementsOf(expectedValues);
+    }
+}
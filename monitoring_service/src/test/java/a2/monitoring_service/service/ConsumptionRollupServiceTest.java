@@ -0,0 +1,119 @@
+package a2.monitoring_service.service;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the rollup and the late-write trigger of V5 against PostgreSQL. Skipped without Docker.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ConsumptionRollupServiceTest {
+
+    private static final UUID DEVICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    // Same upsert as HourlyConsumptionRepository.addConsumption
+    private static final String ADD_CONSUMPTION_SQL = """
+            INSERT INTO hourly_consumption (device_id, hour_timestamp, total_consumption)
+            VALUES (?, ?, ?)
+            ON CONFLICT (device_id, hour_timestamp)
+            DO UPDATE SET total_consumption = hourly_consumption.total_consumption + EXCLUDED.total_consumption
+            """;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static ConsumptionRollupService rollupService;
+
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .load()
+                .migrate();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        rollupService = new ConsumptionRollupService(jdbcTemplate, new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(rollupService, "closeGraceMinutes", 10L);
+    }
+
+    @BeforeEach
+    void clear() {
+        jdbcTemplate.update("TRUNCATE hourly_consumption, daily_consumption, monthly_consumption, rollup_dirty_days");
+    }
+
+    @Test
+    void recomputesADayThatIsWrittenToBehindTheWatermark() {
+        rollupService.rollUp();
+        LocalDateTime watermark = rollupService.rolledUpTo();
+        LocalDate day = watermark.toLocalDate().minusDays(2);
+        addConsumption(day.atTime(10, 0), 1.0);
+        addConsumption(day.atTime(11, 0), 2.0);
+        // These writes are behind the watermark already
+        rollupService.rollUp();
+        assertThat(dailyTotal(day)).isEqualTo(3.0);
+
+        addConsumption(day.atTime(10, 0), 5.0);
+        assertThat(dirtyDays()).isEqualTo(1);
+
+        rollupService.rollUp();
+
+        assertThat(dailyTotal(day)).isEqualTo(8.0);
+        assertThat(monthlyTotal(day.withDayOfMonth(1))).isEqualTo(8.0);
+        assertThat(dirtyDays()).isZero();
+    }
+
+    @Test
+    void leavesAnHourAheadOfTheWatermarkToTheRegularRollup() {
+        rollupService.rollUp();
+        LocalDateTime ahead = rollupService.rolledUpTo().plusHours(2);
+
+        addConsumption(ahead, 4.0);
+        assertThat(dirtyDays()).isZero();
+
+        rollupService.rollUp();
+
+        assertThat(dailyTotal(ahead.toLocalDate())).isNull();
+        assertThat(monthlyTotal(ahead.toLocalDate().withDayOfMonth(1))).isNull();
+    }
+
+    private static void addConsumption(LocalDateTime hour, double delta) {
+        jdbcTemplate.update(ADD_CONSUMPTION_SQL, DEVICE, Timestamp.valueOf(hour), delta);
+    }
+
+    private static Double dailyTotal(LocalDate day) {
+        return jdbcTemplate.queryForList(
+                        "SELECT total_consumption FROM daily_consumption WHERE device_id = ? AND day = ?",
+                        Double.class, DEVICE, Date.valueOf(day))
+                .stream().findFirst().orElse(null);
+    }
+
+    private static Double monthlyTotal(LocalDate month) {
+        return jdbcTemplate.queryForList(
+                        "SELECT total_consumption FROM monthly_consumption WHERE device_id = ? AND month = ?",
+                        Double.class, DEVICE, Date.valueOf(month))
+                .stream().findFirst().orElse(null);
+    }
+
+    private static int dirtyDays() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM rollup_dirty_days", Integer.class);
+    }
+}
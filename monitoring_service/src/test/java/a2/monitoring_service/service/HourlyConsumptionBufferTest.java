@@ -0,0 +1,83 @@
+package a2.monitoring_service.service;
+
+import a2.monitoring_service.model.DeviceHour;
+import a2.monitoring_service.repository.HourlyConsumptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HourlyConsumptionBufferTest {
+
+    private static final UUID SLOW_DEVICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID DEVICE = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final LocalDateTime HOUR = LocalDateTime.of(2026, 10, 1, 10, 0);
+
+    private final HourlyConsumptionRepository repository = mock(HourlyConsumptionRepository.class);
+    private final HourlyConsumptionBuffer buffer = new HourlyConsumptionBuffer(
+            repository, mock(JdbcTemplate.class), mock(PlatformTransactionManager.class));
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(buffer, "maxDirtyBuckets", 500);
+        when(repository.addConsumption(any(), any(), anyDouble())).thenAnswer(call -> call.getArgument(2));
+    }
+
+    @Test
+    void loadsThePersistedTotalOnce() {
+        when(repository.findTotal(DEVICE, HOUR)).thenReturn(Optional.of(10.0));
+
+        assertThat(buffer.add(DEVICE, HOUR, 1.5)).isEqualTo(11.5);
+        assertThat(buffer.add(DEVICE, HOUR, 2.0)).isEqualTo(13.5);
+        assertThat(buffer.addPersisted(new DeviceHour(DEVICE, HOUR), 4.0)).isEqualTo(17.5);
+    }
+
+    @Test
+    void countsAPersistedDeltaInALoadedBucketOnce() {
+        // The caller committed 4.0 before, so the loaded total already holds it
+        when(repository.findTotal(DEVICE, HOUR)).thenReturn(Optional.of(14.0));
+
+        assertThat(buffer.addPersisted(new DeviceHour(DEVICE, HOUR), 4.0)).isEqualTo(14.0);
+    }
+
+    @Test
+    void doesNotHoldUpOtherReadingsOrAFlushWhileLoading() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findTotal(eq(SLOW_DEVICE), any())).thenAnswer(call -> {
+            loading.countDown();
+            release.await();
+            return Optional.of(1.0);
+        });
+        when(repository.findTotal(eq(DEVICE), any())).thenReturn(Optional.empty());
+
+        CompletableFuture<Double> slow = CompletableFuture.supplyAsync(() -> buffer.add(SLOW_DEVICE, HOUR, 1.0));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertThat(buffer.add(DEVICE, HOUR, 3.0)).isEqualTo(3.0);
+            buffer.flush();
+        });
+        verify(repository).addConsumption(DEVICE, HOUR, 3.0);
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo(2.0);
+    }
+}
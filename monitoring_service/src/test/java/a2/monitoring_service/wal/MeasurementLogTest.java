@@ -0,0 +1,241 @@
+package a2.monitoring_service.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class MeasurementLogTest {
+
+    private static final int RECORD_BYTES = 48;
+    private static final UUID DEVICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final Instant TIME = Instant.parse("2026-10-01T10:00:00.123Z");
+
+    @TempDir
+    Path directory;
+
+    private final BlockingQueue<Applied> applied = new LinkedBlockingQueue<>();
+
+    @Test
+    void appliesAppendedRecordsInOrder() throws Exception {
+        MeasurementLog log = open(1 << 20);
+        log.start(this::apply, Map.of("hourly", () -> 0));
+        for (int i = 1; i <= 5; i++) {
+            log.append(DEVICE, TIME.plusSeconds(i), i * 1.5);
+        }
+
+        List<Applied> records = take(5);
+        assertThat(records).extracting(a -> a.record().sequence()).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(records).noneMatch(Applied::replayed);
+        assertThat(records.get(0).record()).isEqualTo(new LogRecord(1, DEVICE, TIME.plusSeconds(1), 1.5));
+        log.close();
+    }
+
+    @Test
+    void replaysRecordsAfterTheLowestCheckpoint() throws Exception {
+        AtomicLong hourly = new AtomicLong();
+        AtomicLong raw = new AtomicLong();
+        MeasurementLog log = open(1 << 20);
+        log.start(this::apply, cursors(hourly, raw));
+        appendReadings(log, 10);
+        take(10);
+        hourly.set(7);
+        raw.set(4);
+        log.close();
+
+        MeasurementLog restarted = open(1 << 20);
+        assertThat(restarted.checkpoint("hourly")).isEqualTo(7);
+        assertThat(restarted.checkpoint("raw")).isEqualTo(4);
+        restarted.start(this::apply, cursors(new AtomicLong(), new AtomicLong()));
+
+        List<Applied> replayed = new ArrayList<>(applied);
+        assertThat(replayed).extracting(a -> a.record().sequence()).containsExactly(5L, 6L, 7L, 8L, 9L, 10L);
+        assertThat(replayed).allMatch(Applied::replayed);
+        applied.clear();
+
+        restarted.append(DEVICE, TIME, 1.0);
+        assertThat(take(1).get(0).record().sequence()).isEqualTo(11);
+        restarted.close();
+    }
+
+    @Test
+    void rotatesSegmentsAndDeletesThoseBehindEveryCheckpoint() throws Exception {
+        AtomicLong cursor = new AtomicLong();
+        MeasurementLog log = open(4 * RECORD_BYTES);
+        log.start(this::apply, Map.of("hourly", cursor::get));
+        appendReadings(log, 10);
+        take(10);
+        assertThat(segments()).containsExactly(segment(1), segment(5), segment(9));
+
+        cursor.set(6);
+        log.checkpoint();
+        assertThat(segments()).containsExactly(segment(5), segment(9));
+        log.close();
+
+        MeasurementLog restarted = open(4 * RECORD_BYTES);
+        restarted.start(this::apply, Map.of("hourly", () -> 0));
+        assertThat(applied).extracting(a -> a.record().sequence()).containsExactly(7L, 8L, 9L, 10L);
+        restarted.close();
+    }
+
+    @Test
+    void stopsReadingASegmentAtATornRecord() throws Exception {
+        MeasurementLog log = open(1 << 20);
+        log.start(this::apply, Map.of("hourly", () -> 0));
+        appendReadings(log, 5);
+        take(5);
+        log.close();
+
+        // A crash while writing record 4 leaves a checksum that does not match its payload
+        try (FileChannel channel = FileChannel.open(directory.resolve(segment(1)),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 0xDEAD), 3 * RECORD_BYTES + 4);
+        }
+
+        MeasurementLog restarted = open(1 << 20);
+        restarted.start(this::apply, Map.of("hourly", () -> 0));
+        assertThat(applied).extracting(a -> a.record().sequence()).containsExactly(1L, 2L, 3L);
+        applied.clear();
+
+        // The torn record's sequence is taken again, in a new segment
+        restarted.append(DEVICE, TIME, 1.0);
+        assertThat(take(1).get(0).record().sequence()).isEqualTo(4);
+        assertThat(segments()).contains(segment(4));
+        restarted.close();
+    }
+
+    @Test
+    void stopsReadingASegmentAtARecordWithoutLength() throws Exception {
+        MeasurementLog log = open(1 << 20);
+        log.start(this::apply, Map.of("hourly", () -> 0));
+        appendReadings(log, 3);
+        take(3);
+        log.close();
+
+        // The length is written last, so a record cut short reads as the end of the segment
+        try (FileChannel channel = FileChannel.open(directory.resolve(segment(1)),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), 2 * RECORD_BYTES);
+        }
+
+        MeasurementLog restarted = open(1 << 20);
+        restarted.start(this::apply, Map.of("hourly", () -> 0));
+        assertThat(applied).extracting(a -> a.record().sequence()).containsExactly(1L, 2L);
+        restarted.close();
+    }
+
+    @Test
+    void continuesAfterACursorThatIsAheadOfTheLog() throws Exception {
+        MeasurementLog log = open(1 << 20);
+        log.start(this::apply, Map.of("hourly", () -> 100));
+        log.append(DEVICE, TIME, 1.0);
+
+        assertThat(take(1).get(0).record().sequence()).isEqualTo(101);
+        assertThat(segments()).containsExactly(segment(101));
+        log.close();
+    }
+
+    @Test
+    void failsAnAppendWhileTheApplierIsAFullQueueBehindAndStillCloses() throws Exception {
+        MeasurementLog log = new MeasurementLog(directory, 1 << 20, 2, 100);
+        log.start((record, replayed) -> {
+            throw new IllegalStateException("database is down");
+        }, Map.of("hourly", () -> 0));
+        log.append(DEVICE, TIME, 1.0);
+        log.append(DEVICE, TIME, 2.0);
+
+        assertThatThrownBy(() -> log.append(DEVICE, TIME, 3.0))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("2 readings behind");
+        assertTimeoutPreemptively(Duration.ofSeconds(5), log::close);
+
+        // Only the readings that were logged come back
+        MeasurementLog restarted = open(1 << 20);
+        restarted.start(this::apply, Map.of("hourly", () -> 0));
+        assertThat(applied).extracting(a -> a.record().sequence()).containsExactly(1L, 2L);
+        restarted.close();
+    }
+
+    @Test
+    void rejectsAppendsOnceStopped() throws Exception {
+        MeasurementLog log = open(1 << 20);
+        log.start(this::apply, Map.of("hourly", () -> 0));
+        log.stopApplier();
+
+        assertThatThrownBy(() -> log.append(DEVICE, TIME, 1.0)).isInstanceOf(IOException.class);
+        log.close();
+    }
+
+    @Test
+    void closesOnce() throws Exception {
+        MeasurementLog log = open(1 << 20);
+        log.start(this::apply, Map.of("hourly", () -> 0));
+        log.stopApplier();
+        log.close();
+        log.close();
+    }
+
+    private MeasurementLog open(int segmentBytes) throws IOException {
+        return new MeasurementLog(directory, segmentBytes, 100, 1_000);
+    }
+
+    private void apply(LogRecord record, boolean replayed) {
+        applied.add(new Applied(record, replayed));
+    }
+
+    private List<Applied> take(int count) throws InterruptedException {
+        List<Applied> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Applied next = applied.poll(5, TimeUnit.SECONDS);
+            assertThat(next).as("record %d of %d", i + 1, count).isNotNull();
+            records.add(next);
+        }
+        return records;
+    }
+
+    private static void appendReadings(MeasurementLog log, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            log.append(DEVICE, TIME.plusSeconds(600L * i), i);
+        }
+    }
+
+    private static Map<String, LongSupplier> cursors(AtomicLong hourly, AtomicLong raw) {
+        return Map.of("hourly", hourly::get, "raw", raw::get);
+    }
+
+    private List<String> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".wal"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static String segment(long firstSequence) {
+        return String.format("%020d.wal", firstSequence);
+    }
+
+    private record Applied(LogRecord record, boolean replayed) {}
+}
@@ -0,0 +1,158 @@
+package ro.tuc.gateway.client;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Count-based circuit breaker. Opens when at least {@code failureRatePercent} of the last
+ * {@code windowSize} calls failed, rejects calls for {@code openDuration}, then lets
+ * {@code halfOpenCalls} probes through: all must succeed to close, any failure reopens.
+ *
+ * <p>A permit carries the generation of the state it was granted in, which changes on every
+ * transition. Results of calls admitted before the last transition are ignored, so calls still
+ * in flight from before the breaker opened can neither close it nor reopen it.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    public static final long REJECTED = -1;
+
+    private final int failureRatePercent;
+    private final int minimumCalls;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+    private final boolean[] window;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private State state = State.CLOSED;
+    private long generation;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private long openedAtNanos;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    public CircuitBreaker(int failureRatePercent,
+                          int windowSize,
+                          int minimumCalls,
+                          Duration openDuration,
+                          int halfOpenCalls) {
+        this.failureRatePercent = failureRatePercent;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+        this.window = new boolean[windowSize];
+    }
+
+    /**
+     * Returns a permit for a call that may go ahead, or {@link #REJECTED}. Every permitted call
+     * must be followed by {@link #onSuccess(long)} or {@link #onFailure(long)} with its permit.
+     */
+    public long tryAcquire() {
+        lock.lock();
+        try {
+            if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openDuration.toNanos()) {
+                transition(State.HALF_OPEN);
+                probesStarted = 0;
+                probesSucceeded = 0;
+            }
+            return switch (state) {
+                case CLOSED -> generation;
+                case OPEN -> REJECTED;
+                case HALF_OPEN -> {
+                    if (probesStarted >= halfOpenCalls) {
+                        yield REJECTED;
+                    }
+                    probesStarted++;
+                    yield generation;
+                }
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess(long permit) {
+        lock.lock();
+        try {
+            if (permit != generation) {
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                if (++probesSucceeded >= halfOpenCalls) {
+                    close();
+                }
+            } else if (state == State.CLOSED) {
+                record(false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onFailure(long permit) {
+        lock.lock();
+        try {
+            if (permit != generation) {
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                open();
+            } else if (state == State.CLOSED) {
+                record(true);
+                if (windowCount >= minimumCalls && windowFailures * 100 >= failureRatePercent * windowCount) {
+                    open();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    private void transition(State next) {
+        state = next;
+        generation++;
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        transition(State.OPEN);
+        openedAtNanos = System.nanoTime();
+    }
+
+    private void close() {
+        transition(State.CLOSED);
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+}
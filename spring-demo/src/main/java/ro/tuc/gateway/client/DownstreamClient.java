@@ -0,0 +1,69 @@
+package ro.tuc.gateway.client;
+
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Pooled HTTP client for one downstream service. Every call passes through the service's
+ * {@link DownstreamGuard}, which limits concurrency and trips a circuit breaker on failures.
+ */
+public class DownstreamClient {
+
+    private final String name;
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+    private final ClientHttpRequestFactory requestFactory;
+    private final RestTemplate restTemplate;
+    private final DownstreamGuard guard;
+
+    public DownstreamClient(String name,
+                            String baseUrl,
+                            HttpClient httpClient,
+                            Duration readTimeout,
+                            ClientHttpRequestFactory requestFactory,
+                            DownstreamGuard guard) {
+        this.name = name;
+        this.baseUrl = baseUrl;
+        this.httpClient = httpClient;
+        this.readTimeout = readTimeout;
+        this.requestFactory = requestFactory;
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.guard = guard;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Request factory behind {@link #getRestTemplate()}, for callers that stream bodies
+     * instead of mapping them.
+     */
+    public ClientHttpRequestFactory getRequestFactory() {
+        return requestFactory;
+    }
+
+    public RestTemplate getRestTemplate() {
+        return restTemplate;
+    }
+
+    public DownstreamGuard getGuard() {
+        return guard;
+    }
+}
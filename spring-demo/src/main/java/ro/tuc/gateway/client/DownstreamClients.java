@@ -0,0 +1,25 @@
+package ro.tuc.gateway.client;
+
+import java.util.Collection;
+import java.util.Map;
+
+public class DownstreamClients {
+
+    private final Map<String, DownstreamClient> clients;
+
+    public DownstreamClients(Map<String, DownstreamClient> clients) {
+        this.clients = Map.copyOf(clients);
+    }
+
+    public DownstreamClient get(String service) {
+        DownstreamClient client = clients.get(service);
+        if (client == null) {
+            throw new IllegalArgumentException("Unknown downstream service: " + service);
+        }
+        return client;
+    }
+
+    public Collection<DownstreamClient> all() {
+        return clients.values();
+    }
+}
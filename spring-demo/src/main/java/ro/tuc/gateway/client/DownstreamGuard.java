@@ -0,0 +1,108 @@
+package ro.tuc.gateway.client;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulkhead and circuit breaker for one downstream service. The bulkhead caps concurrent calls
+ * so a slow service cannot take every gateway thread or connection; the breaker fails calls
+ * fast while the service keeps failing.
+ */
+public class DownstreamGuard {
+
+    public enum Admission { ADMITTED, BULKHEAD_FULL, CIRCUIT_OPEN }
+
+    /**
+     * Outcome of an admission; an admitted entry carries the circuit breaker permit that
+     * {@link #exit} reports the call's result against.
+     */
+    public record Entry(Admission admission, long permit) {
+
+        private static final Entry BULKHEAD_FULL = new Entry(Admission.BULKHEAD_FULL, CircuitBreaker.REJECTED);
+        private static final Entry CIRCUIT_OPEN = new Entry(Admission.CIRCUIT_OPEN, CircuitBreaker.REJECTED);
+    }
+
+    private final Semaphore permits;
+    private final int maxConcurrentCalls;
+    private final Duration acquireTimeout;
+    private final CircuitBreaker circuitBreaker;
+    private final AtomicLong bulkheadRejections = new AtomicLong();
+    private final AtomicLong circuitRejections = new AtomicLong();
+
+    public DownstreamGuard(int maxConcurrentCalls, Duration acquireTimeout, CircuitBreaker circuitBreaker) {
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.acquireTimeout = acquireTimeout;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Admits a call without waiting, for callers that must not block.
+     */
+    public Entry tryEnter() {
+        if (!permits.tryAcquire()) {
+            bulkheadRejections.incrementAndGet();
+            return Entry.BULKHEAD_FULL;
+        }
+        return checkCircuit();
+    }
+
+    /**
+     * Admits a call, waiting up to the acquire timeout for a free slot.
+     */
+    public Entry enter() throws InterruptedException {
+        if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            bulkheadRejections.incrementAndGet();
+            return Entry.BULKHEAD_FULL;
+        }
+        return checkCircuit();
+    }
+
+    /**
+     * Ends an admitted call. {@code success} is false for I/O errors, timeouts and 5xx responses.
+     */
+    public void exit(Entry entry, boolean success) {
+        permits.release();
+        if (success) {
+            circuitBreaker.onSuccess(entry.permit());
+        } else {
+            circuitBreaker.onFailure(entry.permit());
+        }
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public int getActiveCalls() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    public int getQueuedCalls() {
+        return permits.getQueueLength();
+    }
+
+    public long getBulkheadRejections() {
+        return bulkheadRejections.get();
+    }
+
+    public long getCircuitRejections() {
+        return circuitRejections.get();
+    }
+
+    private Entry checkCircuit() {
+        long permit = circuitBreaker.tryAcquire();
+        if (permit == CircuitBreaker.REJECTED) {
+            permits.release();
+            circuitRejections.incrementAndGet();
+            return Entry.CIRCUIT_OPEN;
+        }
+        return new Entry(Admission.ADMITTED, permit);
+    }
+}
@@ -0,0 +1,160 @@
+package ro.tuc.gateway.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admits each request through the service's {@link DownstreamGuard} and holds the slot from
+ * sending the request until the response is closed. I/O errors and 5xx responses count as
+ * failures for the circuit breaker.
+ */
+public class LimitingClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    private final ClientHttpRequestFactory delegate;
+    private final DownstreamGuard guard;
+
+    public LimitingClientHttpRequestFactory(ClientHttpRequestFactory delegate, DownstreamGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        return new LimitedRequest(delegate.createRequest(uri, httpMethod));
+    }
+
+    private DownstreamGuard.Entry enter(URI uri) throws IOException {
+        try {
+            DownstreamGuard.Entry entry = guard.enter();
+            switch (entry.admission()) {
+                case BULKHEAD_FULL -> throw new IOException("Timed out waiting for a connection to " + uri.getHost());
+                case CIRCUIT_OPEN -> throw new IOException("Circuit open for " + uri.getHost());
+                case ADMITTED -> {
+                }
+            }
+            return entry;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to " + uri.getHost());
+        }
+    }
+
+    private final class LimitedRequest implements ClientHttpRequest, StreamingHttpOutputMessage {
+
+        private final ClientHttpRequest request;
+
+        private LimitedRequest(ClientHttpRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            DownstreamGuard.Entry entry = enter(request.getURI());
+            ClientHttpResponse response;
+            try {
+                response = request.execute();
+            } catch (IOException | RuntimeException e) {
+                guard.exit(entry, false);
+                throw e;
+            }
+            return new LimitedResponse(response, entry);
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public void setBody(Body body) {
+            if (request instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(body);
+                return;
+            }
+            try {
+                body.writeTo(request.getBody());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+    }
+
+    private final class LimitedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final DownstreamGuard.Entry entry;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private LimitedResponse(ClientHttpResponse response, DownstreamGuard.Entry entry) {
+            this.response = response;
+            this.entry = entry;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    guard.exit(entry, !isServerError());
+                }
+            }
+        }
+
+        private boolean isServerError() {
+            try {
+                return response.getStatusCode().is5xxServerError();
+            } catch (IOException e) {
+                return true;
+            }
+        }
+    }
+}
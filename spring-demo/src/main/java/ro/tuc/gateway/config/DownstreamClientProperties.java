@@ -0,0 +1,63 @@
+package ro.tuc.gateway.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * HTTP client settings for the downstream services, e.g.
+ * {@code gateway.client.services.device.read-timeout=5s}. Unset values fall back to
+ * {@code gateway.client.defaults.*} and then to built-in defaults.
+ */
+@ConfigurationProperties(prefix = "gateway.client")
+public record DownstreamClientProperties(
+        @DefaultValue ClientSettings defaults,
+        Map<String, ClientSettings> services
+) {
+
+    public enum Protocol { HTTP1, H2C }
+
+    public record ClientSettings(
+            String url,
+            Duration connectTimeout,
+            Duration readTimeout,
+            Integer maxConnections,
+            Duration acquireTimeout,
+            Protocol protocol,
+            Integer breakerFailureRate,
+            Integer breakerWindow,
+            Integer breakerMinimumCalls,
+            Duration breakerOpenDuration,
+            Integer breakerHalfOpenCalls
+    ) {}
+
+    public Map<String, ClientSettings> services() {
+        return services != null ? services : Map.of();
+    }
+
+    public ClientSettings settingsFor(String service) {
+        ClientSettings own = services().get(service);
+        if (own == null || own.url() == null) {
+            throw new IllegalArgumentException("No url configured for downstream service: " + service);
+        }
+        return new ClientSettings(
+                own.url(),
+                pick(own.connectTimeout(), defaults.connectTimeout(), Duration.ofSeconds(2)),
+                pick(own.readTimeout(), defaults.readTimeout(), Duration.ofSeconds(10)),
+                pick(own.maxConnections(), defaults.maxConnections(), 50),
+                pick(own.acquireTimeout(), defaults.acquireTimeout(), Duration.ofSeconds(2)),
+                pick(own.protocol(), defaults.protocol(), Protocol.HTTP1),
+                pick(own.breakerFailureRate(), defaults.breakerFailureRate(), 50),
+                pick(own.breakerWindow(), defaults.breakerWindow(), 20),
+                pick(own.breakerMinimumCalls(), defaults.breakerMinimumCalls(), 10),
+                pick(own.breakerOpenDuration(), defaults.breakerOpenDuration(), Duration.ofSeconds(10)),
+                pick(own.breakerHalfOpenCalls(), defaults.breakerHalfOpenCalls(), 3)
+        );
+    }
+
+    private static <T> T pick(T own, T shared, T fallback) {
+        return own != null ? own : shared != null ? shared : fallback;
+    }
+}
@@ -1,14 +1,98 @@
 package ro.tuc.gateway.config;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import ro.tuc.gateway.client.CircuitBreaker;
+import ro.tuc.gateway.client.DownstreamClient;
+import ro.tuc.gateway.client.DownstreamClients;
+import ro.tuc.gateway.client.DownstreamGuard;
+import ro.tuc.gateway.client.LimitingClientHttpRequestFactory;
+import ro.tuc.gateway.config.DownstreamClientProperties.ClientSettings;
+import ro.tuc.gateway.config.DownstreamClientProperties.Protocol;
+
+import java.net.http.HttpClient;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 @Configuration
+@EnableConfigurationProperties(DownstreamClientProperties.class)
 public class GatewayConfig {
 
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public DownstreamClients downstreamClients(DownstreamClientProperties properties, MeterRegistry meterRegistry) {
+        Map<String, DownstreamClient> clients = new LinkedHashMap<>();
+        for (String name : properties.services().keySet()) {
+            DownstreamClient client = createClient(name, properties.settingsFor(name));
+            registerPoolMetrics(client, meterRegistry);
+            clients.put(name, client);
+        }
+        return new DownstreamClients(clients);
+    }
+
+    private DownstreamClient createClient(String name, ClientSettings settings) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(settings.protocol() == Protocol.H2C ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(settings.connectTimeout())
+                .followRedirects(HttpClient.Redirect.NEVER);
+
+        HttpClient httpClient;
+        JdkClientHttpRequestFactory requestFactory;
+        if (virtualThreads) {
+            // Response handling and streamed request bodies run on virtual threads as well
+            Executor executor = new VirtualThreadTaskExecutor("gateway-" + name + "-");
+            httpClient = builder.executor(executor).build();
+            requestFactory = new JdkClientHttpRequestFactory(httpClient, executor);
+        } else {
+            httpClient = builder.build();
+            requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        }
+        requestFactory.setReadTimeout(settings.readTimeout());
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker(
+                settings.breakerFailureRate(),
+                settings.breakerWindow(),
+                settings.breakerMinimumCalls(),
+                settings.breakerOpenDuration(),
+                settings.breakerHalfOpenCalls());
+        DownstreamGuard guard = new DownstreamGuard(settings.maxConnections(), settings.acquireTimeout(), circuitBreaker);
+        LimitingClientHttpRequestFactory limitingFactory = new LimitingClientHttpRequestFactory(requestFactory, guard);
+
+        return new DownstreamClient(name, settings.url(), httpClient, settings.readTimeout(), limitingFactory, guard);
+    }
+
+    private void registerPoolMetrics(DownstreamClient client, MeterRegistry meterRegistry) {
+        DownstreamGuard guard = client.getGuard();
+        Gauge.builder("gateway.client.connections.active", guard, DownstreamGuard::getActiveCalls)
+                .tag("service", client.getName())
+                .register(meterRegistry);
+        Gauge.builder("gateway.client.connections.pending", guard, DownstreamGuard::getQueuedCalls)
+                .tag("service", client.getName())
+                .register(meterRegistry);
+        Gauge.builder("gateway.client.connections.max", guard, DownstreamGuard::getMaxConcurrentCalls)
+                .tag("service", client.getName())
+                .register(meterRegistry);
+        // 0 = closed, 1 = half-open, 2 = open
+        Gauge.builder("gateway.client.breaker.state", guard, g -> g.getCircuitBreaker().getState().ordinal())
+                .tag("service", client.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.client.rejected", guard, DownstreamGuard::getBulkheadRejections)
+                .tag("service", client.getName())
+                .tag("reason", "bulkhead")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.client.rejected", guard, DownstreamGuard::getCircuitRejections)
+                .tag("service", client.getName())
+                .tag("reason", "circuit_open")
+                .register(meterRegistry);
     }
-}
\ No newline at end of file
+}
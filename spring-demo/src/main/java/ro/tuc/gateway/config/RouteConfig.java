@@ -0,0 +1,100 @@
+package ro.tuc.gateway.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ro.tuc.gateway.client.DownstreamClients;
+import ro.tuc.gateway.config.RouteProperties.RouteDefinition;
+import ro.tuc.gateway.routing.CachePolicy;
+import ro.tuc.gateway.routing.RequestCoalescer;
+import ro.tuc.gateway.routing.ResponseCache;
+import ro.tuc.gateway.routing.ResponseCompression;
+import ro.tuc.gateway.routing.Route;
+import ro.tuc.gateway.routing.RouteTable;
+import ro.tuc.gateway.routing.RoutingServlet;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+@Configuration
+@EnableConfigurationProperties(RouteProperties.class)
+public class RouteConfig {
+
+    @Bean
+    public RouteTable routeTable(RouteProperties properties, DownstreamClients downstreamClients) {
+        List<Route> routes = properties.routes().stream()
+                .map(definition -> toRoute(definition, downstreamClients))
+                .toList();
+        return new RouteTable(routes);
+    }
+
+    @Bean
+    public ResponseCache responseCache(@Value("${gateway.cache.max-bytes:33554432}") long maxBytes,
+                                       @Value("${gateway.cache.max-entry-bytes:262144}") int maxEntryBytes,
+                                       MeterRegistry meterRegistry) {
+        return new ResponseCache(maxBytes, maxEntryBytes, meterRegistry);
+    }
+
+    @Bean
+    public RequestCoalescer requestCoalescer(MeterRegistry meterRegistry) {
+        return new RequestCoalescer(meterRegistry);
+    }
+
+    @Bean
+    public ResponseCompression responseCompression(MeterRegistry meterRegistry) {
+        return new ResponseCompression(meterRegistry);
+    }
+
+    @Bean
+    public ServletRegistrationBean<RoutingServlet> routingServlet(RouteTable routeTable,
+                                                                  DownstreamClients downstreamClients,
+                                                                  ResponseCache responseCache,
+                                                                  RequestCoalescer requestCoalescer,
+                                                                  ResponseCompression responseCompression,
+                                                                  @Value("${gateway.routing.async-timeout-ms:60000}") long asyncTimeoutMs) {
+        ServletRegistrationBean<RoutingServlet> registration = new ServletRegistrationBean<>(
+                new RoutingServlet(routeTable, downstreamClients, responseCache, requestCoalescer,
+                        responseCompression, asyncTimeoutMs), "/api/*");
+        registration.setName("routingServlet");
+        registration.setAsyncSupported(true);
+        registration.setLoadOnStartup(1);
+        return registration;
+    }
+
+    private static Route toRoute(RouteDefinition definition, DownstreamClients downstreamClients) {
+        if (definition.method() == null || definition.path() == null || definition.service() == null) {
+            throw new IllegalArgumentException("Route needs method, path and service: " + definition);
+        }
+        // Fails startup on a typo instead of on the first request
+        downstreamClients.get(definition.service());
+
+        return new Route(
+                definition.method(),
+                definition.path(),
+                definition.service(),
+                definition.target() != null ? definition.target() : definition.path(),
+                definition.roles() != null ? Set.copyOf(definition.roles()) : Set.of(),
+                definition.owner(),
+                definition.publicAccess(),
+                definition.deniedMessage() != null ? definition.deniedMessage() : "Access denied",
+                toCachePolicy(definition.cache()),
+                definition.coalesce()
+        );
+    }
+
+    private static CachePolicy toCachePolicy(CachePolicy cache) {
+        if (cache == null) {
+            return null;
+        }
+        return new CachePolicy(
+                cache.ttl() != null ? cache.ttl() : Duration.ofSeconds(30),
+                cache.closedDateParam(),
+                cache.closedGrace() != null ? cache.closedGrace() : Duration.ofMinutes(15),
+                cache.closedTtl() != null ? cache.closedTtl() : Duration.ofHours(1)
+        );
+    }
+}
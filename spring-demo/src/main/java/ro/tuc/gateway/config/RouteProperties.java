@@ -0,0 +1,40 @@
+package ro.tuc.gateway.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ro.tuc.gateway.routing.CachePolicy;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Route definitions bound from {@code gateway.routes}, see {@code routes.yml}.
+ */
+@ConfigurationProperties(prefix = "gateway")
+public record RouteProperties(List<RouteDefinition> routes) {
+
+    /**
+     * @param target       downstream path, defaults to {@code path}
+     * @param roles        roles allowed unconditionally; empty means any authenticated user
+     * @param owner        path variable that also grants access when it equals the caller's user id
+     * @param publicAccess no token required; identity headers are not forwarded
+     * @param cache        response caching for GET requests; unset ttl and closed-grace default
+     *                     to 30s and 5m
+     * @param coalesce     concurrent identical GETs share one downstream call
+     */
+    public record RouteDefinition(
+            String method,
+            String path,
+            String service,
+            String target,
+            Set<String> roles,
+            String owner,
+            boolean publicAccess,
+            String deniedMessage,
+            CachePolicy cache,
+            boolean coalesce
+    ) {}
+
+    public List<RouteDefinition> routes() {
+        return routes != null ? routes : List.of();
+    }
+}
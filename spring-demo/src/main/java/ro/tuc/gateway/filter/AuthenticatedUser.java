@@ -0,0 +1,3 @@
+package ro.tuc.gateway.filter;
+
+public record AuthenticatedUser(String userId, String username, String role) {}
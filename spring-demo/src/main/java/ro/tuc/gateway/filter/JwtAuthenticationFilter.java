@@ -1,5 +1,7 @@
 package ro.tuc.gateway.filter;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,8 +10,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.filter.OncePerRequestFilter;
+import ro.tuc.gateway.client.DownstreamClient;
+import ro.tuc.gateway.client.DownstreamClients;
+import ro.tuc.gateway.routing.RouteMatch;
+import ro.tuc.gateway.routing.RouteTable;
+import ro.tuc.gateway.routing.RoutingServlet;
+import ro.tuc.gateway.util.JwtUtil;
 
 import java.io.IOException;
 import java.util.Map;
@@ -17,19 +24,29 @@ import java.util.Map;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    private static final String ACTUATOR_PATH = "/actuator";
+    private static final String ADMIN_ROLE = "ADMIN";
+
+    @Autowired
+    private DownstreamClients downstreamClients;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TokenValidationCache tokenValidationCache;
+
     @Autowired
-    private RestTemplate restTemplate;
+    private RouteTable routeTable;
 
-    @Value("${auth.service.url}")
-    private String authServiceUrl;
+    @Value("${gateway.auth.mode:local}")
+    private String authMode;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
-        String path = request.getRequestURI();
-
-        if (isPublicEndpoint(path)) {
+        if (isPublicEndpoint(request)) {
             filterChain.doFilter(request, response);
             return;
         }
@@ -40,43 +57,93 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
+        AuthenticatedUser user;
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", authHeader);
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<Map> validationResponse = restTemplate.exchange(
-                    authServiceUrl + "/api/auth/validate",
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-            Map<String, Object> userData = validationResponse.getBody();
-
-            if (userData != null && Boolean.TRUE.equals(userData.get("valid"))) {
-                request.setAttribute("userId", userData.get("userId"));
-                request.setAttribute("username", userData.get("username"));
-                request.setAttribute("role", userData.get("role"));
-
-                filterChain.doFilter(request, response);
-            } else {
-                sendUnauthorizedResponse(response, "Invalid token");
-            }
+            user = tokenValidationCache.getOrValidate(authHeader.substring(7),
+                    token -> "remote".equalsIgnoreCase(authMode)
+                            ? validateRemotely(authHeader)
+                            : validateLocally(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.debug("Rejected token: " + e.getMessage());
+            sendUnauthorizedResponse(response, "Invalid token");
+            return;
         } catch (Exception e) {
             logger.error("Token validation failed", e);
             sendUnauthorizedResponse(response, "Token validation failed");
+            return;
         }
+
+        if (user == null) {
+            sendUnauthorizedResponse(response, "Invalid token");
+            return;
+        }
+
+        // The gateway's own metrics describe every user's traffic
+        if (isActuatorEndpoint(request) && !ADMIN_ROLE.equals(user.role())) {
+            sendErrorResponse(response, HttpServletResponse.SC_FORBIDDEN, "Admin role required");
+            return;
+        }
+
+        request.setAttribute("userId", user.userId());
+        request.setAttribute("username", user.username());
+        request.setAttribute("role", user.role());
+
+        filterChain.doFilter(request, response);
+    }
+
+    private AuthenticatedUser validateLocally(String token) {
+        Claims claims = jwtUtil.extractAllClaims(token);
+        String username = claims.get("username", String.class);
+        return new AuthenticatedUser(
+                claims.get("userId", String.class),
+                username != null ? username : claims.getSubject(),
+                claims.get("role", String.class)
+        );
+    }
+
+    /**
+     * Asks auth-service to validate the token, e.g. so that revoked credentials are rejected.
+     */
+    private AuthenticatedUser validateRemotely(String authHeader) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", authHeader);
+        HttpEntity<String> entity = new HttpEntity<>(headers);
+
+        DownstreamClient authService = downstreamClients.get("auth");
+        ResponseEntity<Map> validationResponse = authService.getRestTemplate().exchange(
+                authService.getBaseUrl() + "/api/auth/validate",
+                HttpMethod.POST,
+                entity,
+                Map.class
+        );
+        Map<String, Object> userData = validationResponse.getBody();
+
+        if (userData == null || !Boolean.TRUE.equals(userData.get("valid"))) {
+            return null;
+        }
+        return new AuthenticatedUser(
+                (String) userData.get("userId"),
+                (String) userData.get("username"),
+                (String) userData.get("role")
+        );
     }
 
-    private boolean isPublicEndpoint(String path) {
-        return path.contains("/api/auth/login")
-                || path.contains("/api/auth/register")
-                || path.equals("/api/auth/health")
-                || path.contains("/api/auth/credentials");
+    private boolean isPublicEndpoint(HttpServletRequest request) {
+        RouteMatch match = routeTable.match(request.getMethod(), RoutingServlet.routePath(request));
+        return match != null && match.route().publicAccess();
+    }
+
+    private boolean isActuatorEndpoint(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.equals(ACTUATOR_PATH) || path.startsWith(ACTUATOR_PATH + "/");
     }
 
     private void sendUnauthorizedResponse(HttpServletResponse response, String message) throws IOException {
-        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        sendErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED, message);
+    }
+
+    private void sendErrorResponse(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
         response.setContentType("application/json");
         response.getWriter().write("{\"error\":\"" + message + "\"}");
     }
@@ -0,0 +1,126 @@
+package ro.tuc.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ro.tuc.gateway.util.JwtUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Caches successful token validations keyed by the SHA-256 of the token. An entry lives until
+ * the earlier of the token's exp and the configured TTL; when the cache is full, expired
+ * entries are dropped first and then arbitrary ones.
+ */
+@Component
+public class TokenValidationCache {
+
+    private final JwtUtil jwtUtil;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer validationTimer;
+
+    @Value("${gateway.auth.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gateway.auth.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${gateway.auth.cache.max-size:10000}")
+    private int maxSize;
+
+    public TokenValidationCache(JwtUtil jwtUtil, MeterRegistry meterRegistry) {
+        this.jwtUtil = jwtUtil;
+        this.hits = Counter.builder("gateway.token.cache.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("gateway.token.cache.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.validationTimer = Timer.builder("gateway.token.validation")
+                .register(meterRegistry);
+        Gauge.builder("gateway.token.cache.size", entries, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached user for this token, or runs {@code validator} and caches a non-null result.
+     * Exceptions thrown by the validator are propagated and nothing is cached.
+     */
+    public AuthenticatedUser getOrValidate(String token, Function<String, AuthenticatedUser> validator) {
+        if (!enabled) {
+            return timedValidate(token, validator);
+        }
+
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+
+        Entry cached = entries.get(key);
+        if (cached != null && cached.expiresAtMillis() > now) {
+            hits.increment();
+            return cached.user();
+        }
+        misses.increment();
+
+        AuthenticatedUser user = timedValidate(token, validator);
+        if (user != null) {
+            long expiresAt = now + TimeUnit.SECONDS.toMillis(ttlSeconds);
+            Instant tokenExpiry = jwtUtil.peekExpiration(token);
+            if (tokenExpiry != null) {
+                expiresAt = Math.min(expiresAt, tokenExpiry.toEpochMilli());
+            }
+            if (expiresAt > now) {
+                makeRoom(now);
+                entries.put(key, new Entry(user, expiresAt));
+            }
+        }
+        return user;
+    }
+
+    private AuthenticatedUser timedValidate(String token, Function<String, AuthenticatedUser> validator) {
+        long start = System.nanoTime();
+        try {
+            return validator.apply(token);
+        } finally {
+            validationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void makeRoom(long now) {
+        if (entries.size() < maxSize) {
+            return;
+        }
+        entries.values().removeIf(e -> e.expiresAtMillis() <= now);
+
+        int target = maxSize - Math.max(1, maxSize / 10);
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(AuthenticatedUser user, long expiresAtMillis) {}
+}
@@ -0,0 +1,48 @@
+package ro.tuc.gateway.routing;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes an already buffered body with non-blocking I/O and completes once the container has
+ * accepted all of it.
+ */
+class BufferedBodyWriter implements WriteListener {
+
+    private final ServletOutputStream output;
+    private final byte[] body;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private boolean written;
+
+    private BufferedBodyWriter(ServletOutputStream output, byte[] body) {
+        this.output = output;
+        this.body = body;
+    }
+
+    static CompletableFuture<Void> write(ServletOutputStream output, byte[] body) {
+        BufferedBodyWriter writer = new BufferedBodyWriter(output, body);
+        output.setWriteListener(writer);
+        return writer.done;
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        if (!written) {
+            written = true;
+            output.write(body);
+            if (!output.isReady()) {
+                // Called again once the container has drained the write
+                return;
+            }
+        }
+        done.complete(null);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        done.completeExceptionally(t);
+    }
+}
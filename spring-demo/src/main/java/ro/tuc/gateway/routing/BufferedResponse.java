@@ -0,0 +1,23 @@
+package ro.tuc.gateway.routing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fully read downstream response that can be written to several clients.
+ *
+ * @param contentEncoding coding of {@code body}, kept out of {@code headers} so it can be negotiated per client
+ * @param etag set when the response was stored in the {@link ResponseCache}
+ */
+record BufferedResponse(int status, Map<String, List<String>> headers, byte[] body, String contentEncoding, String etag) {
+
+    static BufferedResponse error(int status, String message, long retryAfterSeconds) {
+        Map<String, List<String>> headers = retryAfterSeconds > 0
+                ? Map.of("Content-Type", List.of("application/json"),
+                         "Retry-After", List.of(String.valueOf(retryAfterSeconds)))
+                : Map.of("Content-Type", List.of("application/json"));
+        return new BufferedResponse(status, headers,
+                RoutingServlet.errorBody(message).getBytes(StandardCharsets.UTF_8), null, null);
+    }
+}
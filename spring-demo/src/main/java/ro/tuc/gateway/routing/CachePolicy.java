@@ -0,0 +1,33 @@
+package ro.tuc.gateway.routing;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Caching rule for a GET route. Responses are kept for {@code ttl}, except that a request
+ * whose {@code closedDateParam} names a day that ended more than {@code closedGrace} ago is
+ * kept for the longer {@code closedTtl}. Closed days rarely change, but still can: replayed and
+ * dead-lettered readings arrive late, so they are revalidated eventually.
+ */
+public record CachePolicy(Duration ttl, String closedDateParam, Duration closedGrace, Duration closedTtl) {
+
+    public Instant expiresAt(String dateValue, Instant now) {
+        if (closedDateParam != null && dateValue != null) {
+            try {
+                Instant dayEnd = LocalDate.parse(dateValue)
+                        .plusDays(1)
+                        .atStartOfDay(ZoneId.systemDefault())
+                        .toInstant();
+                if (now.isAfter(dayEnd.plus(closedGrace))) {
+                    return now.plus(closedTtl);
+                }
+            } catch (DateTimeParseException e) {
+                // Not a date; downstream will reject it and the error is not cached
+            }
+        }
+        return now.plus(ttl);
+    }
+}
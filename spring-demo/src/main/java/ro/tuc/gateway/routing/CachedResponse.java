@@ -0,0 +1,33 @@
+package ro.tuc.gateway.routing;
+
+import java.time.Instant;
+
+public record CachedResponse(String contentType, String contentEncoding, String etag, byte[] body, Instant expiresAt) {
+
+    public boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+
+    /**
+     * Weak comparison against an If-None-Match header, as required for GET revalidation.
+     */
+    public boolean matches(String ifNoneMatch) {
+        return matches(etag, ifNoneMatch);
+    }
+
+    static boolean matches(String etag, String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
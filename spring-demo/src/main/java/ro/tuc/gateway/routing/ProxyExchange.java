@@ -0,0 +1,428 @@
+package ro.tuc.gateway.routing;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.tuc.gateway.client.DownstreamClient;
+import ro.tuc.gateway.client.DownstreamGuard;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * One proxied request. The servlet thread returns as soon as the downstream call is started;
+ * bodies are moved with non-blocking servlet I/O and the JDK client's async API, either
+ * streamed or, for cacheable and coalesced GETs, buffered.
+ *
+ * <p>The downstream response and the gateway's own error responses are written from different
+ * threads, so whichever side starts writing first claims the response and the other writes
+ * nothing. Error responses are only written by whoever also completes the exchange.
+ */
+class ProxyExchange {
+
+    private static final Logger log = LoggerFactory.getLogger(ProxyExchange.class);
+
+    // Hop-by-hop headers, plus the ones the JDK client sets itself and rejects from callers
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+            "te", "trailer", "transfer-encoding", "upgrade", "host", "expect", "content-length"
+    );
+
+    // Identity is asserted by the gateway only; never pass client-supplied values through
+    private static final Set<String> GATEWAY_HEADERS = Set.of(
+            "authorization", "x-user-id", "x-username", "x-role"
+    );
+
+    private final HttpServletRequest request;
+    private final HttpServletResponse response;
+    private final DownstreamClient client;
+    private final ResponseCompression compression;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final AtomicReference<Writer> responseWriter = new AtomicReference<>();
+    private AsyncContext asyncContext;
+    private volatile CompletableFuture<?> call;
+    private volatile int downstreamStatus;
+    private volatile boolean clientAborted;
+    private volatile String downstreamEncoding;
+    private volatile ServletBodySubscriber bodySubscriber;
+
+    ProxyExchange(HttpServletRequest request,
+                  HttpServletResponse response,
+                  DownstreamClient client,
+                  ResponseCompression compression) {
+        this.request = request;
+        this.response = response;
+        this.client = client;
+        this.compression = compression;
+    }
+
+    /**
+     * Starts a streamed exchange: both bodies are piped through without buffering. The client's
+     * Accept-Encoding is forwarded, so an encoded response body is passed through untouched.
+     */
+    void start(RouteMatch match, long asyncTimeoutMs) throws IOException {
+        DownstreamGuard guard = client.getGuard();
+        DownstreamGuard.Entry entry = guard.tryEnter();
+        switch (entry.admission()) {
+            case BULKHEAD_FULL -> {
+                RoutingServlet.writeError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        "Too many concurrent requests to " + client.getName());
+                return;
+            }
+            case CIRCUIT_OPEN -> {
+                RoutingServlet.writeError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        client.getName() + " is temporarily unavailable", retryAfterSeconds());
+                return;
+            }
+            case ADMITTED -> {
+            }
+        }
+
+        startAsync(asyncTimeoutMs);
+
+        CompletableFuture<HttpResponse<Void>> completion;
+        try {
+            completion = client.getHttpClient().sendAsync(buildRequest(match, false), this::handleResponse);
+            call = completion;
+        } catch (Exception e) {
+            // Failed before anything was sent, so this says nothing about the downstream's health
+            guard.exit(entry, true);
+            fail(e);
+            return;
+        }
+        completion.whenComplete((ignored, error) -> {
+            guard.exit(entry, downstreamHealthy());
+            if (error == null && bodySubscriber != null) {
+                compression.recordPassThrough(downstreamEncoding, bodySubscriber.bytesWritten(),
+                        ResponseCompression.isGzip(downstreamEncoding) ? bodySubscriber.gzipSize() : -1);
+            }
+            complete(error);
+        });
+    }
+
+    /**
+     * Starts a GET whose response is read fully before it is written, so it can be stored in
+     * {@code cache} and shared through {@code coalescer}. Either may be {@code null}.
+     */
+    void startBuffered(RouteMatch match,
+                       long asyncTimeoutMs,
+                       String key,
+                       ResponseCache cache,
+                       RequestCoalescer coalescer) {
+        startAsync(asyncTimeoutMs);
+
+        Supplier<CompletableFuture<BufferedResponse>> fetch = () -> fetch(match, key, cache);
+        CompletableFuture<BufferedResponse> shared = coalescer != null ? coalescer.join(key, fetch) : fetch.get();
+        // Never cancel the shared call on timeout; other requests may still be waiting for it
+        shared.thenCompose(buffered -> writeBuffered(buffered, cache))
+                .whenComplete((ignored, error) -> complete(error));
+    }
+
+    private void startAsync(long asyncTimeoutMs) {
+        asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(asyncTimeoutMs);
+        asyncContext.addListener(new TimeoutListener());
+    }
+
+    private void complete(Throwable error) {
+        if (error != null) {
+            fail(error instanceof CompletionException ? error.getCause() : error);
+        } else {
+            finish();
+        }
+    }
+
+    private long retryAfterSeconds() {
+        return Math.max(1, client.getGuard().getCircuitBreaker().getOpenDuration().toSeconds());
+    }
+
+    /**
+     * A call counts against the circuit breaker if the downstream answered with 5xx or never
+     * answered, unless the client went away first.
+     */
+    private boolean downstreamHealthy() {
+        int status = downstreamStatus;
+        return status != 0 ? status < 500 : clientAborted;
+    }
+
+    private HttpRequest buildRequest(RouteMatch match, boolean buffered) throws IOException {
+        Route route = match.route();
+        String query = request.getQueryString();
+        URI uri = URI.create(client.getBaseUrl() + route.targetPath(match.variables())
+                + (query != null ? "?" + query : ""));
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(client.getReadTimeout());
+        for (String name : Collections.list(request.getHeaderNames())) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (HOP_BY_HOP_HEADERS.contains(lower) || GATEWAY_HEADERS.contains(lower)) {
+                continue;
+            }
+            // Buffered responses may be cached or shared, so revalidation and content coding
+            // are negotiated by the gateway
+            if (buffered && (lower.startsWith("if-") || lower.equals("accept-encoding"))) {
+                continue;
+            }
+            for (String value : Collections.list(request.getHeaders(name))) {
+                builder.header(name, value);
+            }
+        }
+        if (buffered) {
+            builder.header("Accept-Encoding", ResponseCompression.GZIP);
+        }
+        if (!route.publicAccess()) {
+            identityHeaders().forEach(builder::header);
+        }
+
+        long contentLength = request.getContentLengthLong();
+        boolean hasBody = contentLength > 0 || request.getHeader("Transfer-Encoding") != null;
+        if (!hasBody) {
+            return builder.method(request.getMethod(), HttpRequest.BodyPublishers.noBody()).build();
+        }
+        if (request.getContentType() == null) {
+            builder.header("Content-Type", "application/json");
+        }
+        ServletBodyPublisher body = new ServletBodyPublisher(request.getInputStream());
+        return builder.method(request.getMethod(), contentLength > 0
+                ? HttpRequest.BodyPublishers.fromPublisher(body, contentLength)
+                : HttpRequest.BodyPublishers.fromPublisher(body)).build();
+    }
+
+    private Map<String, String> identityHeaders() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        putIfPresent(headers, "X-User-Id", request.getAttribute("userId"));
+        putIfPresent(headers, "X-Username", request.getAttribute("username"));
+        putIfPresent(headers, "X-Role", request.getAttribute("role"));
+        return headers;
+    }
+
+    private static void putIfPresent(Map<String, String> headers, String name, Object value) {
+        if (value != null) {
+            headers.put(name, value.toString());
+        }
+    }
+
+    private HttpResponse.BodySubscriber<Void> handleResponse(HttpResponse.ResponseInfo info) {
+        downstreamStatus = info.statusCode();
+        if (!claimResponse(Writer.DOWNSTREAM)) {
+            // Timed out or failed meanwhile; the gateway has answered already
+            return HttpResponse.BodySubscribers.discarding();
+        }
+        downstreamEncoding = info.headers().firstValue("Content-Encoding").orElse(null);
+        response.setStatus(info.statusCode());
+        copyResponseHeaders(info.headers());
+        if (info.headers().firstValueAsLong("Content-Length").isPresent()) {
+            response.setContentLengthLong(info.headers().firstValueAsLong("Content-Length").getAsLong());
+        }
+        try {
+            bodySubscriber = new ServletBodySubscriber(response.getOutputStream());
+            return bodySubscriber;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CompletableFuture<BufferedResponse> fetch(RouteMatch match, String key, ResponseCache cache) {
+        DownstreamGuard guard = client.getGuard();
+        DownstreamGuard.Entry entry = guard.tryEnter();
+        switch (entry.admission()) {
+            case BULKHEAD_FULL -> {
+                return CompletableFuture.completedFuture(BufferedResponse.error(
+                        HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        "Too many concurrent requests to " + client.getName(), 0));
+            }
+            case CIRCUIT_OPEN -> {
+                return CompletableFuture.completedFuture(BufferedResponse.error(
+                        HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        client.getName() + " is temporarily unavailable", retryAfterSeconds()));
+            }
+            case ADMITTED -> {
+            }
+        }
+
+        HttpRequest downstreamRequest;
+        Instant expiresAt;
+        try {
+            downstreamRequest = buildRequest(match, true);
+            expiresAt = cache != null ? cacheExpiry(match.route().cache()) : null;
+        } catch (Exception e) {
+            guard.exit(entry, true);
+            return CompletableFuture.failedFuture(e);
+        }
+        return client.getHttpClient()
+                .sendAsync(downstreamRequest, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((downstreamResponse, error) ->
+                        guard.exit(entry, error == null && downstreamResponse.statusCode() < 500))
+                .thenApply(downstreamResponse -> toBuffered(downstreamResponse, key, cache, expiresAt));
+    }
+
+    private Instant cacheExpiry(CachePolicy policy) {
+        String dateValue = policy.closedDateParam() != null ? request.getParameter(policy.closedDateParam()) : null;
+        return policy.expiresAt(dateValue, Instant.now());
+    }
+
+    private BufferedResponse toBuffered(HttpResponse<byte[]> downstreamResponse,
+                                        String key,
+                                        ResponseCache cache,
+                                        Instant expiresAt) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        downstreamResponse.headers().map().forEach((name, values) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (!name.startsWith(":") && !HOP_BY_HOP_HEADERS.contains(lower) && !lower.equals("content-encoding")) {
+                headers.put(name, values);
+            }
+        });
+        String contentEncoding = downstreamResponse.headers().firstValue("Content-Encoding").orElse(null);
+
+        String etag = null;
+        if (cache != null && downstreamResponse.statusCode() == HttpServletResponse.SC_OK) {
+            CachedResponse cached = cache.put(key,
+                    downstreamResponse.headers().firstValue("Content-Type").orElse(null),
+                    contentEncoding,
+                    downstreamResponse.body(),
+                    expiresAt);
+            etag = cached != null ? cached.etag() : null;
+        }
+        return new BufferedResponse(downstreamResponse.statusCode(), headers, downstreamResponse.body(),
+                contentEncoding, etag);
+    }
+
+    private CompletableFuture<Void> writeBuffered(BufferedResponse buffered, ResponseCache cache) {
+        if (!claimResponse(Writer.DOWNSTREAM)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        response.setStatus(buffered.status());
+        buffered.headers().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+
+        String encoding = buffered.contentEncoding();
+        boolean passThrough = compression.canPassThrough(encoding, request.getHeader("Accept-Encoding"));
+        if (!ResponseCompression.isIdentity(encoding)) {
+            ResponseCompression.addVary(response);
+        }
+        if (buffered.etag() != null) {
+            // The ETag is of the stored encoding; a decoded copy is only semantically equivalent
+            response.setHeader("ETag", passThrough ? buffered.etag() : "W/" + buffered.etag());
+            if (CachedResponse.matches(buffered.etag(), request.getHeader("If-None-Match"))) {
+                cache.recordNotModified();
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                response.setContentLength(0);
+                return CompletableFuture.completedFuture(null);
+            }
+        }
+        try {
+            byte[] body = buffered.body();
+            if (passThrough) {
+                if (!ResponseCompression.isIdentity(encoding)) {
+                    response.setHeader("Content-Encoding", encoding);
+                    compression.recordPassThrough(encoding, body);
+                }
+            } else {
+                body = compression.decode(encoding, body);
+            }
+            response.setContentLength(body.length);
+            return BufferedBodyWriter.write(response.getOutputStream(), body);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void copyResponseHeaders(HttpHeaders headers) {
+        headers.map().forEach((name, values) -> {
+            if (!name.startsWith(":") && !HOP_BY_HOP_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                values.forEach(value -> response.addHeader(name, value));
+            }
+        });
+    }
+
+    /**
+     * Answers with a 500 unless the exchange is already finished. Runs after the downstream
+     * writes have stopped, so a response they claimed can still be replaced while it is not
+     * committed. The cause is only logged; it may name internal hosts.
+     */
+    private void fail(Throwable error) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        log.error("Gateway error for {} {}: {}", request.getMethod(), request.getRequestURI(), error.getMessage());
+        if (claimResponse(Writer.GATEWAY) || !response.isCommitted()) {
+            try {
+                RoutingServlet.writeError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                        "Gateway error calling " + client.getName());
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Could not write error response: {}", e.getMessage());
+            }
+        }
+        asyncContext.complete();
+    }
+
+    private void finish() {
+        if (finished.compareAndSet(false, true)) {
+            asyncContext.complete();
+        }
+    }
+
+    private boolean claimResponse(Writer writer) {
+        return responseWriter.compareAndSet(null, writer);
+    }
+
+    private enum Writer { DOWNSTREAM, GATEWAY }
+
+    private final class TimeoutListener implements AsyncListener {
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            if (call != null) {
+                call.cancel(true);
+            }
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            // A response the downstream side has started on may be written to concurrently
+            if (claimResponse(Writer.GATEWAY)) {
+                try {
+                    RoutingServlet.writeError(response, HttpServletResponse.SC_GATEWAY_TIMEOUT,
+                            "Gateway timeout waiting for " + client.getName());
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Could not write timeout response: {}", e.getMessage());
+                }
+            }
+            asyncContext.complete();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            clientAborted = true;
+            if (call != null) {
+                call.cancel(true);
+            }
+            finish();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ro.tuc.gateway.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for idempotent GETs: while a downstream call for a key is in flight, further
+ * requests with the same key wait for it and share its response instead of calling again.
+ */
+public class RequestCoalescer {
+
+    private final Map<String, CompletableFuture<BufferedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    public RequestCoalescer(MeterRegistry meterRegistry) {
+        this.leaders = requests(meterRegistry, "leader");
+        this.followers = requests(meterRegistry, "follower");
+        Gauge.builder("gateway.coalescer.in.flight", inFlight, Map::size)
+                .register(meterRegistry);
+    }
+
+    CompletableFuture<BufferedResponse> join(String key, Supplier<CompletableFuture<BufferedResponse>> fetch) {
+        CompletableFuture<BufferedResponse> shared = new CompletableFuture<>();
+        CompletableFuture<BufferedResponse> existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            followers.increment();
+            return existing;
+        }
+
+        leaders.increment();
+        try {
+            fetch.get().whenComplete((response, error) -> {
+                // Remove first, so requests arriving after completion start a fresh call
+                inFlight.remove(key, shared);
+                if (error != null) {
+                    shared.completeExceptionally(error);
+                } else {
+                    shared.complete(response);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+        }
+        return shared;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String role) {
+        return Counter.builder("gateway.coalescer.requests")
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+}
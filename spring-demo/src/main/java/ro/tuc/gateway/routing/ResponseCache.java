@@ -0,0 +1,141 @@
+package ro.tuc.gateway.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LRU cache of downstream GET responses for routes with a {@link CachePolicy}, bounded by the
+ * total size of the cached bodies. Keys include the caller (see {@link RoutingServlet}), so users
+ * never see each other's data.
+ */
+public class ResponseCache {
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter notModified;
+
+    public ResponseCache(long maxBytes, int maxEntryBytes, MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.notModified = requests(meterRegistry, "not_modified");
+        Gauge.builder("gateway.response.cache.size", this, ResponseCache::size)
+                .register(meterRegistry);
+        Gauge.builder("gateway.response.cache.bytes", this, ResponseCache::bytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public CachedResponse get(String key) {
+        Instant now = Instant.now();
+        lock.lock();
+        try {
+            CachedResponse cached = entries.get(key);
+            if (cached != null && cached.isExpired(now)) {
+                remove(key);
+                return null;
+            }
+            return cached;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores a 200 response body, as encoded by the downstream, and returns the entry with its
+     * ETag, or {@code null} if the body is too large to cache.
+     */
+    public CachedResponse put(String key, String contentType, String contentEncoding, byte[] body, Instant expiresAt) {
+        if (body.length > maxEntryBytes) {
+            return null;
+        }
+        CachedResponse cached = new CachedResponse(contentType, contentEncoding, etag(body), body, expiresAt);
+        lock.lock();
+        try {
+            remove(key);
+            entries.put(key, cached);
+            totalBytes += body.length;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+        return cached;
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    public static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void remove(String key) {
+        CachedResponse previous = entries.remove(key);
+        if (previous != null) {
+            totalBytes -= previous.body().length;
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, CachedResponse>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().getValue().body().length;
+            eldest.remove();
+        }
+    }
+
+    private int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long bytes() {
+        lock.lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("gateway.response.cache.requests")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,166 @@
+package ro.tuc.gateway.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Content-coding negotiation for proxied responses. Backends compress their own responses; the
+ * gateway passes encoded bodies through whenever the client accepts the coding and only decodes
+ * gzip for clients that do not. Buffered routes always ask for gzip, so one stored or shared body
+ * can serve every client.
+ */
+public class ResponseCompression {
+
+    static final String GZIP = "gzip";
+
+    private final MeterRegistry meterRegistry;
+    private final Counter bytesSaved;
+    private final Counter bytesDecoded;
+
+    public ResponseCompression(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.bytesSaved = Counter.builder("gateway.compression.bytes.saved")
+                .description("Bytes not sent to clients because an encoded body was passed through")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.bytesDecoded = Counter.builder("gateway.compression.bytes.decoded")
+                .description("Bytes inflated by the gateway for clients that do not accept the encoding")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether a body with {@code contentEncoding} can be sent as is to a client that sent
+     * {@code acceptEncoding}. Unencoded bodies always can.
+     */
+    boolean canPassThrough(String contentEncoding, String acceptEncoding) {
+        return isIdentity(contentEncoding) || accepts(acceptEncoding, contentEncoding);
+    }
+
+    /**
+     * Records an encoded body sent to the client unchanged. For gzip the saving is known without
+     * decoding, from the uncompressed size in the trailer.
+     */
+    void recordPassThrough(String contentEncoding, long encodedBytes, long decodedBytes) {
+        if (isIdentity(contentEncoding)) {
+            return;
+        }
+        responses(contentEncoding, "passthrough").increment();
+        if (decodedBytes > encodedBytes) {
+            bytesSaved.increment(decodedBytes - encodedBytes);
+        }
+    }
+
+    void recordPassThrough(String contentEncoding, byte[] body) {
+        recordPassThrough(contentEncoding, body.length,
+                isGzip(contentEncoding) ? gzipSize(body, body.length) : -1);
+    }
+
+    /**
+     * Decodes a body for a client that does not accept its encoding. Only gzip is supported,
+     * which is the only coding buffered routes ask for.
+     */
+    byte[] decode(String contentEncoding, byte[] body) throws IOException {
+        if (!isGzip(contentEncoding)) {
+            throw new IOException("Cannot decode content encoding " + contentEncoding);
+        }
+        byte[] decoded;
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            decoded = input.readAllBytes();
+        }
+        responses(contentEncoding, "decoded").increment();
+        bytesDecoded.increment(decoded.length);
+        return decoded;
+    }
+
+    /**
+     * Adds {@code Vary: Accept-Encoding} unless the downstream already listed it.
+     */
+    static void addVary(HttpServletResponse response) {
+        boolean present = response.getHeaders("Vary").stream()
+                .anyMatch(value -> value.toLowerCase(Locale.ROOT).contains("accept-encoding")
+                        || value.trim().equals("*"));
+        if (!present) {
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+    }
+
+    /**
+     * Whether an Accept-Encoding header allows {@code coding}, honouring q-values and {@code *}.
+     * An explicit entry for the coding takes precedence over the wildcard.
+     */
+    static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        String wanted = normalize(coding);
+        Boolean wildcard = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String name = normalize(parts[0]);
+            boolean allowed = quality(parts) > 0;
+            if (name.equals(wanted)) {
+                return allowed;
+            }
+            if (name.equals("*")) {
+                wildcard = allowed;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    static boolean isIdentity(String contentEncoding) {
+        return contentEncoding == null || contentEncoding.isBlank()
+                || contentEncoding.trim().equalsIgnoreCase("identity");
+    }
+
+    static boolean isGzip(String contentEncoding) {
+        return contentEncoding != null && normalize(contentEncoding).equals(GZIP);
+    }
+
+    /**
+     * Uncompressed size of a gzip stream from its ISIZE trailer, the last four bytes in little
+     * endian order. It is the size modulo 2^32, which is exact for any body the gateway proxies.
+     */
+    static long gzipSize(byte[] trailer, int end) {
+        if (end < 4) {
+            return -1;
+        }
+        return (trailer[end - 4] & 0xFFL)
+                | (trailer[end - 3] & 0xFFL) << 8
+                | (trailer[end - 2] & 0xFFL) << 16
+                | (trailer[end - 1] & 0xFFL) << 24;
+    }
+
+    private Counter responses(String contentEncoding, String mode) {
+        return Counter.builder("gateway.compression.responses")
+                .tag("encoding", normalize(contentEncoding))
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static String normalize(String coding) {
+        String name = coding.trim().toLowerCase(Locale.ROOT);
+        return name.equals("x-gzip") ? GZIP : name;
+    }
+}
@@ -0,0 +1,65 @@
+package ro.tuc.gateway.routing;
+
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One gateway route: requests matching {@code method} and {@code pattern} are forwarded to
+ * {@code target} on {@code service}. Patterns and targets may use {@code {name}} segments.
+ *
+ * @param roles         roles that may use the route; empty means any authenticated user
+ * @param owner         path variable that also grants access when it equals the caller's user id
+ * @param publicAccess  no token is required and no identity headers are forwarded
+ * @param deniedMessage error returned with 403 when the caller is not allowed
+ * @param cache         response caching for GET routes, or {@code null}
+ * @param coalesce      concurrent identical GETs share one downstream call
+ */
+public record Route(
+        String method,
+        String pattern,
+        String service,
+        String target,
+        Set<String> roles,
+        String owner,
+        boolean publicAccess,
+        String deniedMessage,
+        CachePolicy cache,
+        boolean coalesce
+) {
+
+    public boolean permits(String role, String userId, Map<String, String> variables) {
+        if (publicAccess || roles.isEmpty() || roles.contains(role)) {
+            return true;
+        }
+        return owner != null && userId != null && userId.equals(variables.get(owner));
+    }
+
+    /**
+     * Fills the target's {@code {name}} segments in one pass. Variables are matched against the
+     * decoded request path, so each value is encoded again as a path segment; braces inside a
+     * value are never taken for another variable.
+     */
+    public String targetPath(Map<String, String> variables) {
+        StringBuilder path = new StringBuilder(target.length() + 32);
+        int from = 0;
+        int open;
+        while ((open = target.indexOf('{', from)) >= 0) {
+            int close = target.indexOf('}', open);
+            if (close < 0) {
+                break;
+            }
+            String value = variables.get(target.substring(open + 1, close));
+            path.append(target, from, open);
+            if (value != null) {
+                path.append(UriUtils.encodePathSegment(value, StandardCharsets.UTF_8));
+            } else {
+                path.append(target, open, close + 1);
+            }
+            from = close + 1;
+        }
+        return path.append(target, from, target.length()).toString();
+    }
+}
@@ -0,0 +1,5 @@
+package ro.tuc.gateway.routing;
+
+import java.util.Map;
+
+public record RouteMatch(Route route, Map<String, String> variables) {}
@@ -0,0 +1,122 @@
+package ro.tuc.gateway.routing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Routes compiled into a trie of path segments, so a lookup walks the request path once.
+ * Literal segments are tried before variables, so {@code /credentials/role} wins over
+ * {@code /credentials/{id}}.
+ */
+public class RouteTable {
+
+    private final Node root = new Node();
+    private final List<Route> routes;
+
+    public RouteTable(List<Route> routes) {
+        this.routes = List.copyOf(routes);
+        for (Route route : routes) {
+            insert(route);
+        }
+    }
+
+    /**
+     * Returns the route for the request, or {@code null} when no route matches the method and path.
+     */
+    public RouteMatch match(String method, String path) {
+        List<String> values = new ArrayList<>();
+        Node node = find(root, split(path), 0, method.toUpperCase(Locale.ROOT), values);
+        if (node == null) {
+            return null;
+        }
+        Endpoint endpoint = node.endpoints.get(method.toUpperCase(Locale.ROOT));
+        Map<String, String> variables = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            variables.put(endpoint.variableNames.get(i), values.get(i));
+        }
+        return new RouteMatch(endpoint.route, variables);
+    }
+
+    /**
+     * Returns whether any route matches the path, regardless of method.
+     */
+    public boolean hasPath(String path) {
+        return find(root, split(path), 0, null, new ArrayList<>()) != null;
+    }
+
+    public List<Route> routes() {
+        return routes;
+    }
+
+    private void insert(Route route) {
+        Node node = root;
+        List<String> variableNames = new ArrayList<>();
+        for (String segment : split(route.pattern())) {
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                variableNames.add(segment.substring(1, segment.length() - 1));
+                if (node.variable == null) {
+                    node.variable = new Node();
+                }
+                node = node.variable;
+            } else {
+                node = node.literals.computeIfAbsent(segment, key -> new Node());
+            }
+        }
+
+        if (route.owner() != null && !variableNames.contains(route.owner())) {
+            throw new IllegalArgumentException("Owner variable '" + route.owner()
+                    + "' is not part of route " + route.pattern());
+        }
+        String method = route.method().toUpperCase(Locale.ROOT);
+        if (node.endpoints.putIfAbsent(method, new Endpoint(route, variableNames)) != null) {
+            throw new IllegalArgumentException("Duplicate route: " + method + " " + route.pattern());
+        }
+    }
+
+    private Node find(Node node, String[] segments, int index, String method, List<String> values) {
+        if (index == segments.length) {
+            boolean matches = method == null ? !node.endpoints.isEmpty() : node.endpoints.containsKey(method);
+            return matches ? node : null;
+        }
+
+        Node literal = node.literals.get(segments[index]);
+        if (literal != null) {
+            Node found = find(literal, segments, index + 1, method, values);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        if (node.variable != null) {
+            values.add(segments[index]);
+            Node found = find(node.variable, segments, index + 1, method, values);
+            if (found != null) {
+                return found;
+            }
+            values.remove(values.size() - 1);
+        }
+        return null;
+    }
+
+    private static String[] split(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments.toArray(String[]::new);
+    }
+
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<>();
+        private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+        private Node variable;
+    }
+
+    private record Endpoint(Route route, List<String> variableNames) {}
+}
@@ -0,0 +1,158 @@
+package ro.tuc.gateway.routing;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ro.tuc.gateway.client.DownstreamClients;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Entry point for all {@code /api/*} traffic. Looks the request up in the {@link RouteTable},
+ * applies the route's role rule and hands the request to an asynchronous {@link ProxyExchange}.
+ */
+public class RoutingServlet extends HttpServlet {
+
+    private final RouteTable routeTable;
+    private final DownstreamClients downstreamClients;
+    private final ResponseCache responseCache;
+    private final RequestCoalescer requestCoalescer;
+    private final ResponseCompression compression;
+    private final long asyncTimeoutMs;
+
+    public RoutingServlet(RouteTable routeTable,
+                          DownstreamClients downstreamClients,
+                          ResponseCache responseCache,
+                          RequestCoalescer requestCoalescer,
+                          ResponseCompression compression,
+                          long asyncTimeoutMs) {
+        this.routeTable = routeTable;
+        this.downstreamClients = downstreamClients;
+        this.responseCache = responseCache;
+        this.requestCoalescer = requestCoalescer;
+        this.compression = compression;
+        this.asyncTimeoutMs = asyncTimeoutMs;
+    }
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = routePath(request);
+        RouteMatch match = routeTable.match(request.getMethod(), path);
+
+        if (match == null) {
+            if (routeTable.hasPath(path)) {
+                writeError(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Method not allowed");
+            } else {
+                writeError(response, HttpServletResponse.SC_NOT_FOUND, "Not found");
+            }
+            return;
+        }
+
+        Route route = match.route();
+        String role = (String) request.getAttribute("role");
+        String userId = (String) request.getAttribute("userId");
+        if (!route.permits(role, userId, match.variables())) {
+            writeError(response, HttpServletResponse.SC_FORBIDDEN, route.deniedMessage());
+            return;
+        }
+
+        ProxyExchange exchange = new ProxyExchange(request, response, downstreamClients.get(route.service()),
+                compression);
+        boolean buffered = route.cache() != null || route.coalesce();
+        if (!buffered || !"GET".equalsIgnoreCase(request.getMethod())) {
+            exchange.start(match, asyncTimeoutMs);
+            return;
+        }
+
+        String key = sharedKey(request, path, userId, role);
+        if (route.cache() != null) {
+            CachedResponse cached = responseCache.get(key);
+            if (cached != null) {
+                writeCached(request, response, cached);
+                return;
+            }
+            responseCache.recordMiss();
+        }
+        exchange.startBuffered(match, asyncTimeoutMs, key,
+                route.cache() != null ? responseCache : null,
+                route.coalesce() ? requestCoalescer : null);
+    }
+
+    /**
+     * Key under which GET responses are cached and coalesced. It covers everything that can
+     * change the downstream answer: caller identity, path, query and the requested media type.
+     * Accept-Encoding is left out because buffered calls always ask for gzip and the gateway
+     * decodes per client.
+     */
+    private static String sharedKey(HttpServletRequest request, String path, String userId, String role) {
+        String query = request.getQueryString();
+        return String.join("|",
+                userId != null ? userId : "",
+                role != null ? role : "",
+                query != null ? path + "?" + query : path,
+                String.valueOf(request.getHeader("Accept")));
+    }
+
+    private void writeCached(HttpServletRequest request, HttpServletResponse response, CachedResponse cached)
+            throws IOException {
+        String encoding = cached.contentEncoding();
+        boolean passThrough = compression.canPassThrough(encoding, request.getHeader("Accept-Encoding"));
+        if (!ResponseCompression.isIdentity(encoding)) {
+            ResponseCompression.addVary(response);
+        }
+        response.setHeader("ETag", passThrough ? cached.etag() : "W/" + cached.etag());
+        if (cached.matches(request.getHeader("If-None-Match"))) {
+            responseCache.recordNotModified();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        responseCache.recordHit();
+        response.setStatus(HttpServletResponse.SC_OK);
+        if (cached.contentType() != null) {
+            response.setContentType(cached.contentType());
+        }
+        byte[] body = cached.body();
+        if (passThrough) {
+            if (!ResponseCompression.isIdentity(encoding)) {
+                response.setHeader("Content-Encoding", encoding);
+                compression.recordPassThrough(encoding, body);
+            }
+        } else {
+            body = compression.decode(encoding, body);
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Path used for route lookups: the container-decoded and normalized path below the
+     * context path, so the auth filter and the router always agree on what was requested.
+     */
+    public static String routePath(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        return pathInfo != null ? request.getServletPath() + pathInfo : request.getServletPath();
+    }
+
+    static void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        writeError(response, status, message, 0);
+    }
+
+    static void writeError(HttpServletResponse response, int status, String message, long retryAfterSeconds)
+            throws IOException {
+        response.reset();
+        response.setStatus(status);
+        if (retryAfterSeconds > 0) {
+            response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        }
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        byte[] body = errorBody(message).getBytes(StandardCharsets.UTF_8);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    static String errorBody(String message) {
+        return "{\"error\":\"" + message.replace("\"", "'") + "\"}";
+    }
+}
@@ -0,0 +1,128 @@
+package ro.tuc.gateway.routing;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the servlet request body in fixed-size chunks using non-blocking reads. Chunks are
+ * only read while the downstream client has outstanding demand.
+ */
+class ServletBodyPublisher implements Flow.Publisher<ByteBuffer> {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final ServletInputStream input;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    ServletBodyPublisher(ServletInputStream input) {
+        this.input = input;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Request body can only be read once"));
+            return;
+        }
+        BodySubscription subscription = new BodySubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        input.setReadListener(subscription);
+    }
+
+    private final class BodySubscription implements Flow.Subscription, ReadListener {
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private volatile boolean done;
+
+        private BodySubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Demand must be positive: " + n));
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        @Override
+        public void onDataAvailable() {
+            drain();
+        }
+
+        @Override
+        public void onAllDataRead() {
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            fail(t);
+        }
+
+        /**
+         * Serializes reads between container callbacks and client demand; whichever thread
+         * enters first keeps reading until there is no more data or no more demand.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                try {
+                    while (!done && demand.get() > 0 && input.isReady()) {
+                        int read = input.read(buffer);
+                        if (read == -1) {
+                            break;
+                        }
+                        if (read > 0) {
+                            demand.decrementAndGet();
+                            subscriber.onNext(ByteBuffer.wrap(Arrays.copyOf(buffer, read)));
+                        }
+                    }
+                    if (!done && input.isFinished()) {
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                } catch (IOException e) {
+                    fail(e);
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void fail(Throwable t) {
+            if (!done) {
+                done = true;
+                subscriber.onError(t);
+            }
+        }
+    }
+}
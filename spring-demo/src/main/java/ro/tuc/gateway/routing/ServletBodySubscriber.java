@@ -0,0 +1,145 @@
+package ro.tuc.gateway.routing;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes the downstream response body to the servlet output using non-blocking writes. The
+ * next chunk is only requested once the container can accept more data, and the body only
+ * completes once the last write has drained.
+ */
+class ServletBodySubscriber implements HttpResponse.BodySubscriber<Void> {
+
+    private final ServletOutputStream output;
+    private final CompletableFuture<Void> body = new CompletableFuture<>();
+    private final AtomicBoolean awaitingWrite = new AtomicBoolean();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean upstreamComplete;
+    // Total size and last four bytes of the body, so a gzip body's saving can be read from its trailer
+    private final byte[] tail = new byte[4];
+    private volatile long bytesWritten;
+
+    ServletBodySubscriber(ServletOutputStream output) {
+        this.output = output;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        awaitingWrite.set(true);
+        // The container calls onWritePossible once the output is ready, which requests the first chunk
+        output.setWriteListener(new WriteListener() {
+            @Override
+            public void onWritePossible() {
+                if (upstreamComplete) {
+                    completeIfDrained();
+                } else {
+                    requestNext();
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                subscription.cancel();
+                body.completeExceptionally(t);
+            }
+        });
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        try {
+            // A non-blocking output accepts one write per isReady() check
+            byte[] bytes = toBytes(items);
+            output.write(bytes);
+            track(bytes);
+            awaitingWrite.set(true);
+            if (output.isReady()) {
+                requestNext();
+            }
+        } catch (IOException | IllegalStateException e) {
+            subscription.cancel();
+            body.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        body.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        // May arrive right after the last onNext, while its write is still pending
+        upstreamComplete = true;
+        completeIfDrained();
+    }
+
+    @Override
+    public CompletionStage<Void> getBody() {
+        return body;
+    }
+
+    long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Uncompressed size from the gzip trailer, valid once the body is complete and gzip encoded.
+     */
+    long gzipSize() {
+        return bytesWritten >= 4 ? ResponseCompression.gzipSize(tail, 4) : -1;
+    }
+
+    private void track(byte[] bytes) {
+        // onNext calls are serialized, so plain updates are safe
+        int keep = Math.min(bytes.length, tail.length);
+        System.arraycopy(tail, keep, tail, 0, tail.length - keep);
+        System.arraycopy(bytes, bytes.length - keep, tail, tail.length - keep, keep);
+        bytesWritten += bytes.length;
+    }
+
+    /**
+     * Completes the body if the output has drained. Otherwise isReady() has registered for
+     * another onWritePossible, which calls back here.
+     */
+    private void completeIfDrained() {
+        try {
+            if (output.isReady()) {
+                body.complete(null);
+            }
+        } catch (IllegalStateException e) {
+            body.completeExceptionally(e);
+        }
+    }
+
+    private void requestNext() {
+        if (awaitingWrite.compareAndSet(true, false)) {
+            subscription.request(1);
+        }
+    }
+
+    private static byte[] toBytes(List<ByteBuffer> items) {
+        int size = 0;
+        for (ByteBuffer item : items) {
+            size += item.remaining();
+        }
+        byte[] bytes = new byte[size];
+        int offset = 0;
+        for (ByteBuffer item : items) {
+            int length = item.remaining();
+            item.get(bytes, offset, length);
+            offset += length;
+        }
+        return bytes;
+    }
+}
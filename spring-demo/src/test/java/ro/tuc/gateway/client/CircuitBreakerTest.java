@@ -0,0 +1,140 @@
+package ro.tuc.gateway.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    @Test
+    void staysClosedUntilMinimumCallsAreReached() {
+        CircuitBreaker breaker = new CircuitBreaker(50, 10, 4, Duration.ofMinutes(1), 2);
+
+        fail(breaker, 3);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void opensAtTheFailureRateOnceMinimumCallsAreReached() {
+        CircuitBreaker breaker = new CircuitBreaker(50, 10, 4, Duration.ofMinutes(1), 2);
+
+        succeed(breaker, 3);
+        fail(breaker, 2);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        fail(breaker, 1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isEqualTo(CircuitBreaker.REJECTED);
+    }
+
+    @Test
+    void countsOnlyTheLastWindowOfCalls() {
+        CircuitBreaker breaker = new CircuitBreaker(50, 4, 4, Duration.ofMinutes(1), 2);
+
+        fail(breaker, 1);
+        succeed(breaker, 4);
+        fail(breaker, 1);
+
+        // The first failure has left the window: one failure in the last four calls
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void letsALimitedNumberOfProbesThroughWhenHalfOpen() {
+        CircuitBreaker breaker = openBreaker(Duration.ZERO, 2);
+
+        long first = breaker.tryAcquire();
+        long second = breaker.tryAcquire();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(first).isNotEqualTo(CircuitBreaker.REJECTED);
+        assertThat(second).isNotEqualTo(CircuitBreaker.REJECTED);
+        assertThat(breaker.tryAcquire()).isEqualTo(CircuitBreaker.REJECTED);
+
+        breaker.onSuccess(first);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        breaker.onSuccess(second);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void reopensOnAnyProbeFailure() {
+        CircuitBreaker breaker = openBreaker(Duration.ZERO, 2);
+        long first = breaker.tryAcquire();
+        long second = breaker.tryAcquire();
+
+        breaker.onSuccess(first);
+        breaker.onFailure(second);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void ignoresAProbeResultThatArrivesAfterTheBreakerReopened() {
+        CircuitBreaker breaker = openBreaker(Duration.ZERO, 2);
+        long failed = breaker.tryAcquire();
+        long late = breaker.tryAcquire();
+        breaker.onFailure(failed);
+
+        breaker.onSuccess(late);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void ignoresResultsOfCallsAdmittedBeforeTheBreakerOpened() {
+        CircuitBreaker breaker = new CircuitBreaker(50, 10, 2, Duration.ZERO, 1);
+        long inFlight = breaker.tryAcquire();
+        long otherInFlight = breaker.tryAcquire();
+        fail(breaker, 2);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // A success from before the breaker opened must not count as the half-open probe
+        long probe = breaker.tryAcquire();
+        breaker.onSuccess(inFlight);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        // Nor may a failure from then reopen it
+        breaker.onFailure(otherInFlight);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        breaker.onSuccess(probe);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void ignoresLateFailuresAfterClosing() {
+        CircuitBreaker breaker = new CircuitBreaker(50, 4, 1, Duration.ZERO, 1);
+        long inFlight = breaker.tryAcquire();
+        fail(breaker, 1);
+        long probe = breaker.tryAcquire();
+        breaker.onSuccess(probe);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        // With a minimum of one call, a counted failure would open the breaker again
+        breaker.onFailure(inFlight);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private static CircuitBreaker openBreaker(Duration openDuration, int halfOpenCalls) {
+        CircuitBreaker breaker = new CircuitBreaker(50, 4, 1, openDuration, halfOpenCalls);
+        fail(breaker, 1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        return breaker;
+    }
+
+    private static void succeed(CircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.onSuccess(breaker.tryAcquire());
+        }
+    }
+
+    private static void fail(CircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.onFailure(breaker.tryAcquire());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ro.tuc.gateway.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachePolicyTest {
+
+    private static final CachePolicy POLICY =
+            new CachePolicy(Duration.ofSeconds(15), "date", Duration.ofMinutes(15), Duration.ofHours(1));
+    private static final LocalDate DAY = LocalDate.of(2026, 10, 1);
+    private static final Instant DAY_END = DAY.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
+
+    @Test
+    void keepsAClosedDayForTheClosedTtl() {
+        Instant now = DAY_END.plus(Duration.ofMinutes(16));
+
+        assertThat(POLICY.expiresAt(DAY.toString(), now)).isEqualTo(now.plus(Duration.ofHours(1)));
+    }
+
+    @Test
+    void treatsADayWithinTheGraceAsOpen() {
+        Instant now = DAY_END.plus(Duration.ofMinutes(14));
+
+        assertThat(POLICY.expiresAt(DAY.toString(), now)).isEqualTo(now.plusSeconds(15));
+    }
+
+    @Test
+    void usesTheTtlWithoutADate() {
+        Instant now = DAY_END.plus(Duration.ofDays(3));
+
+        assertThat(POLICY.expiresAt(null, now)).isEqualTo(now.plusSeconds(15));
+        assertThat(POLICY.expiresAt("yesterday", now)).isEqualTo(now.plusSeconds(15));
+    }
+}
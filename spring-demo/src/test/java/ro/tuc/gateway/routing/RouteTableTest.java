@@ -0,0 +1,134 @@
+package ro.tuc.gateway.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RouteTableTest {
+
+    private final RouteTable table = new RouteTable(List.of(
+            route("GET", "/api/users", "/users"),
+            route("GET", "/api/users/{id}", "/users/{id}"),
+            route("PUT", "/api/users/{id}", "/users/{id}"),
+            route("GET", "/api/auth/credentials/role", "/credentials/role"),
+            route("PUT", "/api/auth/credentials/{userId}", "/credentials/{userId}"),
+            route("GET", "/api/monitoring/{deviceId}/range", "/monitoring/{deviceId}/range"),
+            route("GET", "/api/users/{id}/devices/{deviceId}", "/users/{id}/devices/{deviceId}")
+    ));
+
+    @Test
+    void matchesLiteralPath() {
+        RouteMatch match = table.match("GET", "/api/users");
+
+        assertThat(match).isNotNull();
+        assertThat(match.route().pattern()).isEqualTo("/api/users");
+        assertThat(match.variables()).isEmpty();
+    }
+
+    @Test
+    void capturesVariablesAndBuildsTarget() {
+        RouteMatch match = table.match("GET", "/api/monitoring/abc-123/range");
+
+        assertThat(match.variables()).containsExactlyEntriesOf(Map.of("deviceId", "abc-123"));
+        assertThat(match.route().targetPath(match.variables())).isEqualTo("/monitoring/abc-123/range");
+    }
+
+    @Test
+    void encodesVariablesInTarget() {
+        RouteMatch match = table.match("GET", "/api/monitoring/a b/range");
+
+        assertThat(match.route().targetPath(match.variables())).isEqualTo("/monitoring/a%20b/range");
+    }
+
+    @Test
+    void keepsQueryAndFragmentCharactersInsideTheirSegment() {
+        RouteMatch match = table.match("GET", "/api/monitoring/x?to=1#y/range");
+
+        assertThat(match.route().targetPath(match.variables())).isEqualTo("/monitoring/x%3Fto=1%23y/range");
+    }
+
+    @Test
+    void doesNotSubstituteVariablesInsideValues() {
+        RouteMatch match = table.match("GET", "/api/users/{deviceId}/devices/d1");
+
+        assertThat(match.route().targetPath(match.variables())).isEqualTo("/users/%7BdeviceId%7D/devices/d1");
+    }
+
+    @Test
+    void prefersLiteralSegmentOverVariable() {
+        assertThat(table.match("GET", "/api/auth/credentials/role").route().pattern())
+                .isEqualTo("/api/auth/credentials/role");
+        assertThat(table.match("PUT", "/api/auth/credentials/role").variables())
+                .containsExactlyEntriesOf(Map.of("userId", "role"));
+    }
+
+    @Test
+    void backtracksFromLiteralWhenMethodDoesNotMatch() {
+        RouteMatch match = table.match("PUT", "/api/auth/credentials/role");
+
+        assertThat(match.route().pattern()).isEqualTo("/api/auth/credentials/{userId}");
+    }
+
+    @Test
+    void matchesMethodCaseInsensitively() {
+        assertThat(table.match("put", "/api/users/7")).isNotNull();
+    }
+
+    @Test
+    void ignoresEmptySegments() {
+        assertThat(table.match("GET", "/api//users/7/").variables())
+                .containsExactlyEntriesOf(Map.of("id", "7"));
+    }
+
+    @Test
+    void returnsNullWhenNothingMatches() {
+        assertThat(table.match("GET", "/api/users/7/devices")).isNull();
+        assertThat(table.match("DELETE", "/api/users/7")).isNull();
+        assertThat(table.match("GET", "/api")).isNull();
+    }
+
+    @Test
+    void hasPathIgnoresMethod() {
+        assertThat(table.hasPath("/api/users/7")).isTrue();
+        assertThat(table.hasPath("/api/monitoring/1")).isFalse();
+    }
+
+    @Test
+    void rejectsDuplicateRoutes() {
+        assertThatThrownBy(() -> new RouteTable(List.of(
+                route("GET", "/api/users/{id}", "/users/{id}"),
+                route("get", "/api/users/{userId}", "/users/{userId}"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Duplicate route");
+    }
+
+    @Test
+    void rejectsOwnerThatIsNotAPathVariable() {
+        Route route = new Route("GET", "/api/devices/user/{userId}", "device", "/devices/user/{userId}",
+                Set.of("ADMIN"), "id", false, "denied", null, false);
+
+        assertThatThrownBy(() -> new RouteTable(List.of(route)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Owner variable 'id'");
+    }
+
+    @Test
+    void ownerVariableGrantsAccess() {
+        Route route = new Route("GET", "/api/devices/user/{userId}", "device", "/devices/user/{userId}",
+                Set.of("ADMIN"), "userId", false, "denied", null, false);
+        RouteMatch match = new RouteTable(List.of(route)).match("GET", "/api/devices/user/u1");
+
+        assertThat(route.permits("CLIENT", "u1", match.variables())).isTrue();
+        assertThat(route.permits("CLIENT", "u2", match.variables())).isFalse();
+        assertThat(route.permits("ADMIN", "u2", match.variables())).isTrue();
+    }
+
+    private static Route route(String method, String pattern, String target) {
+        return new Route(method, pattern, "service", target, Set.of(), null, false, "denied", null, false);
+    }
+}